@@ -0,0 +1,64 @@
+package com.longye.spring.benchmark;
+
+import com.longye.spring.framework.annotation.MyPathVariable;
+import com.longye.spring.framework.annotation.MyRequestParam;
+import com.longye.spring.framework.bind.MyArgumentBinder;
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求参数绑定,对应MyDispatcherServlet.getMethodRealValue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinderBenchmark {
+
+    private MyArgumentBinder[] binders;
+
+    private MyInMemoryRequest request;
+
+    private MyInMemoryResponse response;
+
+    private Map<String, String> pathVariables;
+
+    @Setup
+    public void setup() throws Exception {
+        binders = MyArgumentBinder.create(BinderBenchmark.class.getMethod("query",
+                Long.class, String.class, int.class, List.class, Boolean.class));
+
+        request = new MyInMemoryRequest("GET", "/order/42");
+        request.setParameter("name", "apple");
+        request.setParameter("page", "3");
+        request.setParameter("ids", "1", "2", "3");
+        //没有声明的参数不应该影响绑定
+        request.setParameter("utm_source", "benchmark");
+        response = new MyInMemoryResponse();
+        pathVariables = Collections.singletonMap("id", "42");
+    }
+
+    @Benchmark
+    public Object[] bind() throws Exception {
+        Object[] paramValues = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            paramValues[i] = binders[i].bind(request, response, pathVariables);
+        }
+        return paramValues;
+    }
+
+    public void query(@MyPathVariable("id") Long id,
+                      @MyRequestParam(value = "name", required = true) String name,
+                      @MyRequestParam(value = "page", defaultValue = "1") int page,
+                      @MyRequestParam("ids") List<Integer> ids,
+                      @MyRequestParam(value = "debug", defaultValue = "false") Boolean debug) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.longye.spring.benchmark;
+
+import com.longye.spring.framework.servlet.MyDispatcherServlet;
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+import com.longye.spring.framework.servlet.memory.MyInMemoryServletConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的请求分发:路由、参数绑定、调用controller、渲染页面
+ * 请求和响应都在内存中,不经过servlet容器和网络
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatcherBenchmark {
+
+    private MyDispatcherServlet servlet;
+
+    @Setup
+    public void setup() throws Exception {
+        PrintStream out = silence();
+        try {
+            servlet = new MyDispatcherServlet();
+            servlet.init(new MyInMemoryServletConfig("mySpring")
+                    .addInitParameter("contextConfigLocation", "application.properties"));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    /**
+     * 每个线程复用自己的请求和响应
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        private final MyInMemoryRequest request = new MyInMemoryRequest();
+
+        private final MyInMemoryResponse response = new MyInMemoryResponse();
+
+        private MyInMemoryRequest prepare(String uri) {
+            request.reset();
+            response.reset();
+            request.setMethod("GET");
+            request.setRequestURI(uri);
+            return request;
+        }
+    }
+
+    @Benchmark
+    public int requestParam(Exchange exchange) throws Exception {
+        MyInMemoryRequest request = exchange.prepare("/test/fruit");
+        request.setParameter("name", "apple");
+        request.setParameter("count", "3");
+        servlet.service(exchange.request, exchange.response);
+        return exchange.response.getContentSize();
+    }
+
+    @Benchmark
+    public int pathVariable(Exchange exchange) throws Exception {
+        exchange.prepare("/test/fruit/apple").setParameter("count", "3");
+        servlet.service(exchange.request, exchange.response);
+        return exchange.response.getContentSize();
+    }
+
+    @Benchmark
+    public int notFound(Exchange exchange) throws Exception {
+        exchange.prepare("/test/none");
+        servlet.service(exchange.request, exchange.response);
+        return exchange.response.getContentSize();
+    }
+
+    /**
+     * 初始化时的日志输出不计入结果
+     */
+    static PrintStream silence() {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        return out;
+    }
+}
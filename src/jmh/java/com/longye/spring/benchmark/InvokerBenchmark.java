@@ -0,0 +1,67 @@
+package com.longye.spring.benchmark;
+
+import com.longye.spring.framework.servlet.MyInvoker;
+import com.longye.spring.view.MyModelAndView;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比接口方法的反射调用和MyInvoker调用
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvokerBenchmark {
+
+    private Object controller;
+
+    private Method method;
+
+    private MyInvoker invoker;
+
+    private Object[] paramValues;
+
+    @Setup
+    public void setup() throws Exception {
+        controller = new FruitController();
+        method = FruitController.class.getMethod("queryFruit", String.class, Integer.class);
+        invoker = MyInvoker.create(controller, method);
+        paramValues = new Object[]{"apple", 3};
+    }
+
+    /**
+     * 原来的方式:Method.invoke,每次都判断返回值类型
+     */
+    @Benchmark
+    public MyModelAndView reflection() throws Exception {
+        Object obj = method.invoke(controller, paramValues);
+        if(method.getReturnType() == MyModelAndView.class){
+            return (MyModelAndView) obj;
+        }
+        return null;
+    }
+
+    @Benchmark
+    public MyModelAndView invoker() throws Exception {
+        return (MyModelAndView) invoker.invoke(paramValues);
+    }
+
+    /**
+     * 方法体尽量简单,这样测出来的主要是调用本身的开销
+     */
+    public static class FruitController {
+
+        private final MyModelAndView mv = new MyModelAndView("fruit.jspk", new HashMap<String, Object>());
+
+        public MyModelAndView queryFruit(String name, Integer count) {
+            mv.getModel().put(name, count);
+            return mv;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.longye.spring.benchmark;
+
+import com.longye.spring.framework.servlet.MyRouter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * url路由:前缀树和原来按顺序逐个正则匹配的对比
+ * 查找的是最后注册的url,对逐个匹配来说是最差的情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int routes;
+
+    private MyRouter<Integer> router;
+
+    private List<Pattern> patterns;
+
+    private String staticUrl;
+
+    private String variableUrl;
+
+    @Setup
+    public void setup() {
+        router = new MyRouter<>();
+        patterns = new ArrayList<>();
+        for (int i = 0; i < routes; i++) {
+            String path = "/api/module" + (i % 10) + "/resource" + i;
+            router.addRoute(path, i);
+            router.addRoute(path + "/{id}", i);
+            patterns.add(Pattern.compile(path));
+            patterns.add(Pattern.compile(path + "/[^/]+"));
+        }
+        staticUrl = "/api/module" + ((routes - 1) % 10) + "/resource" + (routes - 1);
+        variableUrl = staticUrl + "/12345";
+    }
+
+    @Benchmark
+    public Object trieStatic() {
+        return router.match(staticUrl);
+    }
+
+    @Benchmark
+    public Object trieVariable() {
+        return router.match(variableUrl);
+    }
+
+    @Benchmark
+    public Object regexStatic() {
+        return scan(staticUrl);
+    }
+
+    @Benchmark
+    public Object regexVariable() {
+        return scan(variableUrl);
+    }
+
+    private Pattern scan(String url) {
+        for (Pattern pattern : patterns) {
+            if(pattern.matcher(url).matches()){
+                return pattern;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.longye.spring.benchmark;
+
+import com.longye.spring.framework.context.ApplicationContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容器启动:初始化IOC容器并完成依赖注入
+ * 基准测试用的应用在com.longye.spring.benchmark.app下,4个模块共12个controller和12个service
+ * index使用编译时生成的组件索引,scan扫描classpath
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"startup-index.properties", "startup-scan.properties"})
+    private String location;
+
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        out = DispatcherBenchmark.silence();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public int initIOC() {
+        ApplicationContext.initIOC(location);
+        int beans = ApplicationContext.getIOC().size();
+        ApplicationContext.close();
+        return beans;
+    }
+}
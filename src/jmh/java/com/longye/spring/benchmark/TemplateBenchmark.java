@@ -0,0 +1,99 @@
+package com.longye.spring.benchmark;
+
+import com.longye.spring.framework.view.MyTemplate;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 页面渲染,对应MyDispatcherServlet.parseView
+ * small为demo中的fruit.jspk,large为生成的约200KB、每10行一个占位符的页面
+ * legacyRegex是原来逐行正则替换的实现(不含读文件),作为对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+
+    @Param({"small", "large"})
+    private String page;
+
+    private String content;
+
+    private String[] lines;
+
+    private MyTemplate template;
+
+    private Map<String, Object> model;
+
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() throws IOException {
+        model = new HashMap<>();
+        model.put("name", "apple");
+        model.put("count", 3);
+
+        if("small".equals(page)){
+            try (InputStream in = TemplateBenchmark.class.getClassLoader().getResourceAsStream("views/fruit.jspk")) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, n);
+                }
+                content = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }else{
+            StringBuilder sb = new StringBuilder("<html><body>\n");
+            for (int i = 0; i < 4000; i++) {
+                sb.append("    <div class=\"row\">product row ").append(i).append(" lorem ipsum dolor sit amet</div>");
+                if(i % 10 == 0){
+                    sb.append("<span>@{name}</span><b>@{count}</b>");
+                }
+                sb.append('\n');
+            }
+            content = sb.append("</body></html>\n").toString();
+        }
+        lines = content.split("\n");
+        template = MyTemplate.compile(content);
+        out = new ByteArrayOutputStream(content.length() * 2);
+    }
+
+    @Benchmark
+    public int compiledStream() throws IOException {
+        out.reset();
+        template.writeTo(model, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public String legacyRegex() {
+        StringBuffer sb = new StringBuffer();
+        for (String line : lines) {
+            Matcher matcher = Pattern.compile("@\\{[^{]*\\}", Pattern.CASE_INSENSITIVE).matcher(line);
+            while (matcher.find()){
+                for (int i = 0; i <= matcher.groupCount(); i++) {
+                    String paramName = matcher.group(i);
+                    paramName = paramName.substring(2, paramName.length());
+                    paramName = paramName.substring(0, paramName.length() - 1);
+                    Object paramValue = model.get(paramName);
+                    line = line.replaceAll("@\\{" + paramName + "\\}", paramValue.toString());
+                }
+            }
+            sb.append(line);
+        }
+        return sb.toString();
+    }
+}
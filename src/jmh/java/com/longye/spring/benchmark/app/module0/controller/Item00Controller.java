@@ -0,0 +1,39 @@
+package com.longye.spring.benchmark.app.module0.controller;
+
+import com.longye.spring.benchmark.app.module0.service.Item00Service;
+import com.longye.spring.framework.annotation.MyAutowired;
+import com.longye.spring.framework.annotation.MyController;
+import com.longye.spring.framework.annotation.MyPathVariable;
+import com.longye.spring.framework.annotation.MyRequestMapping;
+import com.longye.spring.framework.annotation.MyRequestParam;
+import com.longye.spring.view.MyModelAndView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的模拟业务代码,由StartupBenchmark扫描
+ */
+@MyController
+@MyRequestMapping("/module0/item0")
+public class Item00Controller {
+
+    @MyAutowired
+    private Item00Service service;
+
+    @MyRequestMapping("/get/{id}")
+    public MyModelAndView get(@MyPathVariable("id") Integer id) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("name", service.find(id));
+        model.put("count", id);
+        return new MyModelAndView("fruit.jspk", model);
+    }
+
+    @MyRequestMapping("/list")
+    public MyModelAndView list(@MyRequestParam(value = "page", defaultValue = "1") int page) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("name", service.find(page));
+        model.put("count", page);
+        return new MyModelAndView("fruit.jspk", model);
+    }
+}
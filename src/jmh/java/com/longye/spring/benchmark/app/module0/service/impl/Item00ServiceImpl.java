@@ -0,0 +1,16 @@
+package com.longye.spring.benchmark.app.module0.service.impl;
+
+import com.longye.spring.benchmark.app.module0.service.Item00Service;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * 基准测试用的模拟业务代码,由StartupBenchmark扫描
+ */
+@MyService
+public class Item00ServiceImpl implements Item00Service {
+
+    @Override
+    public String find(Integer id) {
+        return "item00-" + id;
+    }
+}
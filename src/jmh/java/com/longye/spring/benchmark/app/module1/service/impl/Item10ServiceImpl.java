@@ -0,0 +1,16 @@
+package com.longye.spring.benchmark.app.module1.service.impl;
+
+import com.longye.spring.benchmark.app.module1.service.Item10Service;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * 基准测试用的模拟业务代码,由StartupBenchmark扫描
+ */
+@MyService
+public class Item10ServiceImpl implements Item10Service {
+
+    @Override
+    public String find(Integer id) {
+        return "item10-" + id;
+    }
+}
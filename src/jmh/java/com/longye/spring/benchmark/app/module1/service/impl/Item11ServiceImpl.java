@@ -0,0 +1,16 @@
+package com.longye.spring.benchmark.app.module1.service.impl;
+
+import com.longye.spring.benchmark.app.module1.service.Item11Service;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * 基准测试用的模拟业务代码,由StartupBenchmark扫描
+ */
+@MyService
+public class Item11ServiceImpl implements Item11Service {
+
+    @Override
+    public String find(Integer id) {
+        return "item11-" + id;
+    }
+}
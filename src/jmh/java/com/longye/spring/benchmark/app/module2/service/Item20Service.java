@@ -0,0 +1,9 @@
+package com.longye.spring.benchmark.app.module2.service;
+
+/**
+ * 基准测试用的模拟业务代码,由StartupBenchmark扫描
+ */
+public interface Item20Service {
+
+    String find(Integer id);
+}
@@ -0,0 +1,16 @@
+package com.longye.spring.benchmark.app.module3.service.impl;
+
+import com.longye.spring.benchmark.app.module3.service.Item31Service;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * 基准测试用的模拟业务代码,由StartupBenchmark扫描
+ */
+@MyService
+public class Item31ServiceImpl implements Item31Service {
+
+    @Override
+    public String find(Integer id) {
+        return "item31-" + id;
+    }
+}
@@ -0,0 +1,26 @@
+package com.longye.spring.demo.advice;
+
+import com.longye.spring.framework.annotation.MyControllerAdvice;
+import com.longye.spring.framework.annotation.MyExceptionHandler;
+import com.longye.spring.framework.annotation.MyResponseBody;
+import com.longye.spring.framework.bind.MyBindException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 全局异常处理,请求参数错误时返回JSON
+ */
+@MyControllerAdvice
+@MyResponseBody
+public class GlobalExceptionAdvice {
+
+    @MyExceptionHandler
+    public Map<String, Object> handleBindException(MyBindException e) {
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", e.getStatus());
+        body.put("message", e.getMessage());
+        return body;
+    }
+}
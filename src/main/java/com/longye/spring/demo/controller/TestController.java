@@ -1,15 +1,23 @@
 package com.longye.spring.demo.controller;
 
+import com.longye.spring.demo.entity.Fruit;
 import com.longye.spring.demo.service.AppleService;
 import com.longye.spring.demo.service.OrangeService;
 import com.longye.spring.framework.annotation.MyAutowired;
 import com.longye.spring.framework.annotation.MyController;
+import com.longye.spring.framework.annotation.MyPathVariable;
+import com.longye.spring.framework.annotation.MyRequestBody;
 import com.longye.spring.framework.annotation.MyRequestMapping;
 import com.longye.spring.framework.annotation.MyRequestParam;
+import com.longye.spring.framework.annotation.MyResponseBody;
 import com.longye.spring.view.MyModelAndView;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by tianl on 2018/10/17.
@@ -39,4 +47,73 @@ public class TestController {
 
         return new MyModelAndView("fruit.jspk", model);
     }
+
+    /**
+     * 通过路径变量获取参数,比如/test/fruit/apple?count=3
+     * @param name
+     * @param count
+     */
+    @MyRequestMapping(value ="/fruit/{name}")
+    public MyModelAndView queryFruitByPath(@MyPathVariable("name") String name,
+                                           @MyRequestParam(value = "count",required = true)String count){
+
+        return queryFruit(name, count);
+    }
+
+    /**
+     * 异步接口,返回CompletableFuture时不会一直占用容器的线程
+     * @param name
+     * @param count
+     */
+    @MyRequestMapping(value ="/fruitAsync")
+    public CompletableFuture<MyModelAndView> queryFruitAsync(@MyRequestParam(value = "name",required = true) String name,
+                                                             @MyRequestParam(value = "count",required = true)String count){
+
+        return CompletableFuture.supplyAsync(() -> queryFruit(name, count));
+    }
+
+    /**
+     * 通过JSON格式的请求体获取参数,比如{"name":"apple","count":3}
+     * @param fruit
+     */
+    @MyRequestMapping(value ="/fruitJson")
+    public MyModelAndView queryFruitJson(@MyRequestBody Fruit fruit){
+
+        return queryFruit(fruit.getName(), String.valueOf(fruit.getCount()));
+    }
+
+    /**
+     * 返回值直接写成JSON,比如/test/fruitList?name=apple&count=3
+     * @param name
+     * @param count
+     */
+    @MyResponseBody
+    @MyRequestMapping(value ="/fruitList")
+    public List<Fruit> queryFruitList(@MyRequestParam(value = "name",required = true) String name,
+                                      @MyRequestParam(value = "count",required = true)int count){
+
+        List<Fruit> fruits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Fruit fruit = new Fruit();
+            fruit.setName(name);
+            fruit.setCount(i + 1);
+            fruit.setTags(Arrays.asList("fresh", "No." + (i + 1)));
+            fruits.add(fruit);
+        }
+        return fruits;
+    }
+
+    /**
+     * 模拟耗时的后端,最多同时处理2个请求,超过的请求直接返回503,比如/test/slow?millis=500
+     * @param millis
+     */
+    @MyResponseBody
+    @MyRequestMapping(value ="/slow", maxConcurrency = 2)
+    public Map<String, Object> slow(@MyRequestParam(value = "millis",required = true) long millis) throws InterruptedException {
+
+        Thread.sleep(millis);
+        Map<String, Object> result = new HashMap<>();
+        result.put("millis", millis);
+        return result;
+    }
 }
@@ -0,0 +1,39 @@
+package com.longye.spring.demo.entity;
+
+import java.util.List;
+
+/**
+ * 水果,demo中@MyRequestBody和@MyResponseBody使用的实体
+ */
+public class Fruit {
+
+    private String name;
+
+    private int count;
+
+    private List<String> tags;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,33 @@
+package com.longye.spring.demo.interceptor;
+
+import com.longye.spring.framework.annotation.MyInterceptor;
+import com.longye.spring.framework.servlet.MyHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+
+/**
+ * 在响应头中输出接口方法的耗时
+ */
+@MyInterceptor(value = "/test/**", exclude = "/test/slow")
+public class TimingInterceptor implements MyHandlerInterceptor {
+
+    private static final String START = TimingInterceptor.class.getName() + ".START";
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Method handler) {
+        req.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest req, HttpServletResponse resp, Method handler, Object result) {
+
+        Object start = req.getAttribute(START);
+        if(start instanceof Long){
+            long micros = (System.nanoTime() - (Long) start) / 1000;
+            resp.setHeader("X-Response-Time", micros + "us");
+        }
+    }
+}
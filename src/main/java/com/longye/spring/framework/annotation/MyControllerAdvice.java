@@ -0,0 +1,12 @@
+package com.longye.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 全局的异常处理类,类中带@MyExceptionHandler注解的方法处理所有接口抛出的异常,该类会被放入IOC容器
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyControllerAdvice {
+}
@@ -0,0 +1,20 @@
+package com.longye.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 异常处理方法,加在controller或者@MyControllerAdvice类的方法上
+ * controller中的处理方法只处理该controller的接口抛出的异常,@MyControllerAdvice中的处理所有接口的异常
+ * 方法的参数可以是异常本身、HttpServletRequest和HttpServletResponse,返回值和接口方法一样处理
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyExceptionHandler {
+
+    //处理的异常类型,为空时使用方法参数中的异常类型
+    Class<? extends Throwable>[] value() default {};
+
+    //响应的状态码,为0时MyHttpException使用它自己的状态码,其他异常为500
+    int status() default 0;
+}
@@ -0,0 +1,22 @@
+package com.longye.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 接口拦截器,加在MyHandlerInterceptor的实现类上,该类会被放入IOC容器
+ * url的格式和@MyRequestMapping一致,*匹配一段,**匹配任意多段,比如/test/**
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyInterceptor {
+
+    //拦截的url,默认拦截所有接口
+    String[] value() default {"/**"};
+
+    //不拦截的url
+    String[] exclude() default {};
+
+    //执行顺序,越小越先执行preHandle
+    int order() default 0;
+}
@@ -0,0 +1,13 @@
+package com.longye.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 延迟初始化,和MyService一起使用
+ * 启动时只在IOC容器中放入该bean接口的代理,第一次调用时才实例化并注入依赖
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyLazy {
+}
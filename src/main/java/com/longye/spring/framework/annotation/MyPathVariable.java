@@ -0,0 +1,14 @@
+package com.longye.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 绑定url中{xxx}形式的路径变量
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyPathVariable {
+
+    String value() default "";
+}
@@ -3,12 +3,16 @@ package com.longye.spring.framework.annotation;
 import java.lang.annotation.*;
 
 /**
+ * 把JSON格式的请求体绑定到方法参数上
  * Created by tianl on 2018/10/17.
  */
-@Target({ElementType.METHOD})
+@Target({ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface MyRequestBody {
 
     String value() default "";
+
+    //请求体为空时是否返回400
+    boolean required() default true;
 }
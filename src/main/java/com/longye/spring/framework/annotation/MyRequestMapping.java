@@ -10,5 +10,12 @@ import java.lang.annotation.*;
 @Documented
 public @interface MyRequestMapping {
 
+    //url,支持{xxx}形式的路径变量,比如/user/{id}
     String value() default "";
+
+    //为true时value按正则表达式匹配,只有显式声明的才会走正则
+    boolean regex() default false;
+
+    //该接口同时处理的最大请求数,超过时直接返回503。为0时不限制,application.properties中的maxConcurrency.url优先
+    int maxConcurrency() default 0;
 }
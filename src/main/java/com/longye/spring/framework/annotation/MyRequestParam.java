@@ -10,7 +10,13 @@ import java.lang.annotation.*;
 @Documented
 public @interface MyRequestParam {
 
+    //表示没有配置默认值,因为注解的属性不能为null,所以用一个不会出现在请求参数中的字符串来表示
+    String NO_DEFAULT = "\n\t\t\n\t\t\n";
+
     String value() default "";
 
     boolean required() default false;
+
+    //请求中没有该参数时使用的默认值
+    String defaultValue() default NO_DEFAULT;
 }
@@ -0,0 +1,13 @@
+package com.longye.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 把方法的返回值写成JSON作为响应体,不再解析页面
+ * 加在Controller类上时对该类的所有方法生效
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyResponseBody {
+}
@@ -0,0 +1,542 @@
+package com.longye.spring.framework.bind;
+
+import com.longye.spring.framework.annotation.MyPathVariable;
+import com.longye.spring.framework.annotation.MyRequestBody;
+import com.longye.spring.framework.annotation.MyRequestParam;
+import com.longye.spring.framework.json.MyJsonException;
+import com.longye.spring.framework.json.MyJsonMapper;
+import com.longye.spring.framework.json.MyJsonReader;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 方法参数的绑定器,每个方法参数对应一个
+ * 参数名、类型转换器、默认值在初始化时就已经确定,请求时只需要按参数的顺序依次取值
+ */
+public abstract class MyArgumentBinder {
+
+    /**
+     * 参数值的来源
+     */
+    public enum Source {
+        REQUEST_PARAM, PATH_VARIABLE, REQUEST_BODY, OTHER
+    }
+
+    private final Source source;
+
+    private final String name;
+
+    private final Class<?> valueType;
+
+    private final MyConverter converter;
+
+    protected MyArgumentBinder() {
+        this(Source.OTHER, null, null, null);
+    }
+
+    protected MyArgumentBinder(Source source, String name, Class<?> valueType, MyConverter converter) {
+        this.source = source;
+        this.name = name;
+        this.valueType = valueType;
+        this.converter = converter;
+    }
+
+    /**
+     * 从请求中获取该参数的值
+     * @param req
+     * @param resp
+     * @param pathVariables url中的路径变量
+     * @return
+     * @throws Exception
+     */
+    public abstract Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) throws Exception;
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return 请求参数名或者路径变量名,其他来源为null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 单个值转换后的类型,数组和集合为元素的类型,请求体为参数的类型
+     */
+    public Class<?> getValueType() {
+        return valueType;
+    }
+
+    /**
+     * @return 单个值使用的类型转换器,请求体和其他来源为null
+     */
+    public MyConverter getConverter() {
+        return converter;
+    }
+
+    /**
+     * 为方法的每个参数创建绑定器
+     * @param method
+     * @return 和方法参数一一对应的绑定器数组
+     */
+    public static MyArgumentBinder[] create(Method method) {
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Type[] genericTypes = method.getGenericParameterTypes();
+        //因为参数前可以添加多个注解,所以getParameterAnnotations获取的是一个二维数组
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+
+        MyArgumentBinder[] binders = new MyArgumentBinder[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            binders[i] = create(method, parameterTypes[i], genericTypes[i], parameterAnnotations[i]);
+        }
+        return binders;
+    }
+
+    private static MyArgumentBinder create(Method method, Class<?> type, Type genericType, Annotation[] annotations) {
+
+        for (Annotation annotation : annotations) {
+            Class<? extends Annotation> clazz = annotation.annotationType();
+            if(clazz == MyRequestParam.class){
+                MyRequestParam requestParam = (MyRequestParam) annotation;
+                String name = requestParam.value();
+                if(name.equals("")){
+                    throw new IllegalStateException("@MyRequestParam必须指定参数名: " + method);
+                }
+                return new RequestParamBinder(name, requestParam.required(), requestParam.defaultValue(),
+                        createReader(method, type, genericType));
+            }
+            if(clazz == MyPathVariable.class){
+                String name = ((MyPathVariable) annotation).value();
+                if(name.equals("")){
+                    throw new IllegalStateException("@MyPathVariable必须指定变量名: " + method);
+                }
+                return new PathVariableBinder(name, type, converter(method, type));
+            }
+            if(clazz == MyRequestBody.class){
+                try {
+                    return new RequestBodyBinder(((MyRequestBody) annotation).required(), type, MyJsonMapper.reader(genericType));
+                } catch (IllegalStateException e) {
+                    throw new IllegalStateException(e.getMessage() + ": " + method, e);
+                }
+            }
+        }
+
+        if(type == HttpServletRequest.class){
+            return new MyArgumentBinder() {
+                @Override
+                public Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) {
+                    return req;
+                }
+            };
+        }
+        if(type == HttpServletResponse.class){
+            return new MyArgumentBinder() {
+                @Override
+                public Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) {
+                    return resp;
+                }
+            };
+        }
+
+        //没有注解的参数不绑定,基本类型传默认值
+        return new ConstantBinder(emptyValue(type));
+    }
+
+    /**
+     * 根据参数类型创建取值方式:数组、集合或者单个值
+     */
+    private static ValueReader createReader(Method method, Class<?> type, Type genericType) {
+
+        if(type.isArray()){
+            return new ArrayReader(type.getComponentType(), converter(method, type.getComponentType()));
+        }
+        if(type == List.class || type == Collection.class || type == Iterable.class || type == Set.class){
+            Class<?> elementType = String.class;
+            if(genericType instanceof ParameterizedType){
+                Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                if(argument instanceof Class){
+                    elementType = (Class<?>) argument;
+                }
+            }
+            return new CollectionReader(type == Set.class, elementType, converter(method, elementType));
+        }
+        return new SingleReader(type, converter(method, type));
+    }
+
+    private static MyConverter converter(Method method, Class<?> type) {
+
+        MyConverter converter = MyConverters.get(type);
+        if(null == converter){
+            throw new IllegalStateException("不支持的参数类型" + type.getName() + ": " + method);
+        }
+        return converter;
+    }
+
+    /**
+     * 参数缺失时的值,基本类型不能为null
+     */
+    private static Object emptyValue(Class<?> type) {
+
+        if(type.isPrimitive()){
+            return Array.get(Array.newInstance(type, 1), 0);
+        }
+        return null;
+    }
+
+    private static Object convert(MyConverter converter, String name, String value, Class<?> type) {
+
+        try {
+            return converter.convert(value);
+        } catch (Exception e) {
+            throw new MyBindException("参数" + name + "的值[" + value + "]无法转换为" + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * @MyRequestParam参数
+     */
+    private static class RequestParamBinder extends MyArgumentBinder {
+
+        private final String name;
+
+        private final boolean required;
+
+        //初始化时就转换好的默认值
+        private final Object defaultValue;
+
+        private final ValueReader reader;
+
+        public RequestParamBinder(String name, boolean required, String defaultValue, ValueReader reader) {
+            super(Source.REQUEST_PARAM, name, reader.valueType(), reader.converter());
+            this.name = name;
+            //配置了默认值的参数就不再是必须的了
+            this.required = required && MyRequestParam.NO_DEFAULT.equals(defaultValue);
+            this.reader = reader;
+            if(MyRequestParam.NO_DEFAULT.equals(defaultValue)){
+                this.defaultValue = reader.empty();
+            }else{
+                this.defaultValue = reader.read(name, new String[]{defaultValue});
+            }
+        }
+
+        @Override
+        public Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) {
+
+            String[] values = req.getParameterValues(name);
+            if(null == values || values.length == 0 || (values.length == 1 && values[0].isEmpty())){
+                if(required){
+                    throw new MyBindException("缺少必须的参数: " + name);
+                }
+                return defaultValue;
+            }
+            return reader.read(name, values);
+        }
+    }
+
+    /**
+     * @MyPathVariable参数
+     */
+    private static class PathVariableBinder extends MyArgumentBinder {
+
+        private final String name;
+
+        private final Class<?> type;
+
+        private final MyConverter converter;
+
+        public PathVariableBinder(String name, Class<?> type, MyConverter converter) {
+            super(Source.PATH_VARIABLE, name, type, converter);
+            this.name = name;
+            this.type = type;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) {
+
+            String value = pathVariables.get(name);
+            if(null == value){
+                throw new MyBindException("缺少路径变量: " + name);
+            }
+            //路由按原始的url匹配,这样编码后的/不会被当成分隔符,变量的值在这里才解码
+            return convert(converter, name, decodePath(name, value), type);
+        }
+    }
+
+    /**
+     * 按UTF-8解码url路径中的%XX,和查询参数不同,路径中的+不表示空格,保持原样
+     * @param name 变量名,用于错误信息
+     * @param value 原始的路径段
+     * @return
+     */
+    static String decodePath(String name, String value) {
+
+        int pos = value.indexOf('%');
+        if(pos < 0){
+            return value;
+        }
+        int length = value.length();
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(value, 0, pos);
+        byte[] bytes = null;
+        while (pos < length) {
+            char c = value.charAt(pos);
+            if(c != '%'){
+                sb.append(c);
+                pos++;
+                continue;
+            }
+            //连续的%XX是一个字符的UTF-8编码,需要一起解码
+            if(null == bytes){
+                bytes = new byte[(length - pos) / 3];
+            }
+            int count = 0;
+            while (pos < length && value.charAt(pos) == '%') {
+                int high = pos + 2 < length ? Character.digit(value.charAt(pos + 1), 16) : -1;
+                int low = high < 0 ? -1 : Character.digit(value.charAt(pos + 2), 16);
+                if(low < 0){
+                    throw new MyBindException("路径变量" + name + "中的%编码不正确: " + value);
+                }
+                bytes[count++] = (byte) ((high << 4) | low);
+                pos += 3;
+            }
+            sb.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @MyRequestBody参数,直接从请求的输入流中边读边绑定,不会先把请求体读成字符串
+     */
+    private static class RequestBodyBinder extends MyArgumentBinder {
+
+        private final boolean required;
+
+        private final Class<?> type;
+
+        private final MyJsonMapper.TypeReader reader;
+
+        public RequestBodyBinder(boolean required, Class<?> type, MyJsonMapper.TypeReader reader) {
+            super(Source.REQUEST_BODY, null, type, null);
+            this.required = required;
+            this.type = type;
+            this.reader = reader;
+        }
+
+        @Override
+        public Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) throws IOException {
+
+            //先读一个字节判断请求体是否为空,Content-Length在chunked请求中是不知道的
+            PushbackInputStream in = new PushbackInputStream(req.getInputStream(), 1);
+            int first = in.read();
+            if(first < 0){
+                if(required){
+                    throw new MyBindException("缺少请求体");
+                }
+                return emptyValue(type);
+            }
+            in.unread(first);
+
+            try {
+                MyJsonReader jsonReader = new MyJsonReader(in);
+                Object value = reader.read(jsonReader);
+                //确认请求体中只有一个JSON值
+                jsonReader.peek();
+                if(null == value && required){
+                    throw new MyBindException("缺少请求体");
+                }
+                return null == value ? emptyValue(type) : value;
+            } catch (MyJsonException e) {
+                throw new MyBindException("请求体无法解析: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static class ConstantBinder extends MyArgumentBinder {
+
+        private final Object value;
+
+        public ConstantBinder(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object bind(HttpServletRequest req, HttpServletResponse resp, Map<String, String> pathVariables) {
+            return value;
+        }
+    }
+
+    /**
+     * 把请求参数的值(可能有多个)转换为方法参数的类型
+     */
+    private interface ValueReader {
+
+        Object read(String name, String[] values);
+
+        //参数缺失时的值
+        Object empty();
+
+        //单个值转换后的类型
+        Class<?> valueType();
+
+        MyConverter converter();
+    }
+
+    /**
+     * 单个值,多个值时字符串类型用,拼接,其他类型取第一个
+     */
+    private static class SingleReader implements ValueReader {
+
+        private final Class<?> type;
+
+        private final MyConverter converter;
+
+        private final boolean string;
+
+        public SingleReader(Class<?> type, MyConverter converter) {
+            this.type = type;
+            this.converter = converter;
+            this.string = converter == MyConverters.get(String.class);
+        }
+
+        @Override
+        public Object read(String name, String[] values) {
+
+            String value = values[0];
+            if(values.length > 1 && string){
+                StringBuilder sb = new StringBuilder(value);
+                for (int i = 1; i < values.length; i++) {
+                    sb.append(',').append(values[i]);
+                }
+                value = sb.toString();
+            }
+            return convert(converter, name, value, type);
+        }
+
+        @Override
+        public Object empty() {
+            return emptyValue(type);
+        }
+
+        @Override
+        public Class<?> valueType() {
+            return type;
+        }
+
+        @Override
+        public MyConverter converter() {
+            return converter;
+        }
+    }
+
+    /**
+     * 数组,只有一个值时按,拆分
+     */
+    private static class ArrayReader implements ValueReader {
+
+        private final Class<?> componentType;
+
+        private final MyConverter converter;
+
+        public ArrayReader(Class<?> componentType, MyConverter converter) {
+            this.componentType = componentType;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object read(String name, String[] values) {
+
+            values = split(values);
+            Object array = Array.newInstance(componentType, values.length);
+            for (int i = 0; i < values.length; i++) {
+                Array.set(array, i, convert(converter, name, values[i], componentType));
+            }
+            return array;
+        }
+
+        @Override
+        public Object empty() {
+            return null;
+        }
+
+        @Override
+        public Class<?> valueType() {
+            return componentType;
+        }
+
+        @Override
+        public MyConverter converter() {
+            return converter;
+        }
+    }
+
+    /**
+     * List、Set等集合,只有一个值时按,拆分
+     */
+    private static class CollectionReader implements ValueReader {
+
+        private final boolean set;
+
+        private final Class<?> elementType;
+
+        private final MyConverter converter;
+
+        public CollectionReader(boolean set, Class<?> elementType, MyConverter converter) {
+            this.set = set;
+            this.elementType = elementType;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object read(String name, String[] values) {
+
+            values = split(values);
+            Collection<Object> collection = set ? new LinkedHashSet<>(values.length * 2) : new ArrayList<>(values.length);
+            for (String value : values) {
+                collection.add(convert(converter, name, value, elementType));
+            }
+            return collection;
+        }
+
+        @Override
+        public Object empty() {
+            return null;
+        }
+
+        @Override
+        public Class<?> valueType() {
+            return elementType;
+        }
+
+        @Override
+        public MyConverter converter() {
+            return converter;
+        }
+    }
+
+    private static String[] split(String[] values) {
+
+        if(values.length == 1 && values[0].indexOf(',') >= 0){
+            return values[0].split(",");
+        }
+        return values;
+    }
+}
@@ -0,0 +1,18 @@
+package com.longye.spring.framework.bind;
+
+import com.longye.spring.framework.exception.MyHttpException;
+
+/**
+ * 请求参数绑定失败,比如缺少必须的参数或者参数的值无法转换
+ * 状态码为400,和MyHttpException一样不记录堆栈
+ */
+public class MyBindException extends MyHttpException {
+
+    public MyBindException(String message) {
+        super(400, message);
+    }
+
+    public MyBindException(String message, Throwable cause) {
+        super(400, message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.longye.spring.framework.bind;
+
+/**
+ * 把请求参数的字符串转换为方法参数的类型
+ */
+public interface MyConverter {
+
+    /**
+     * @param value 请求参数的值,不为null
+     * @return 转换后的值
+     * @throws Exception 无法转换时抛出
+     */
+    Object convert(String value) throws Exception;
+}
@@ -0,0 +1,170 @@
+package com.longye.spring.framework.bind;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型转换器的注册表,key为参数类型
+ * 初始化时根据方法参数的类型查找一次转换器,请求时直接使用,不再每次判断类型
+ */
+public class MyConverters {
+
+    private static final Map<Class<?>, MyConverter> CONVERTERS = new ConcurrentHashMap<>();
+
+    static {
+        MyConverter stringConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return value;
+            }
+        };
+        register(String.class, stringConverter);
+        register(Object.class, stringConverter);
+        register(CharSequence.class, stringConverter);
+
+        MyConverter integerConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return Integer.valueOf(value.trim());
+            }
+        };
+        register(Integer.class, integerConverter);
+        register(int.class, integerConverter);
+
+        MyConverter longConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return Long.valueOf(value.trim());
+            }
+        };
+        register(Long.class, longConverter);
+        register(long.class, longConverter);
+
+        MyConverter shortConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return Short.valueOf(value.trim());
+            }
+        };
+        register(Short.class, shortConverter);
+        register(short.class, shortConverter);
+
+        MyConverter byteConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return Byte.valueOf(value.trim());
+            }
+        };
+        register(Byte.class, byteConverter);
+        register(byte.class, byteConverter);
+
+        MyConverter doubleConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return Double.valueOf(value.trim());
+            }
+        };
+        register(Double.class, doubleConverter);
+        register(double.class, doubleConverter);
+
+        MyConverter floatConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return Float.valueOf(value.trim());
+            }
+        };
+        register(Float.class, floatConverter);
+        register(float.class, floatConverter);
+
+        MyConverter booleanConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                String v = value.trim();
+                if("true".equalsIgnoreCase(v) || "1".equals(v) || "on".equalsIgnoreCase(v) || "yes".equalsIgnoreCase(v)){
+                    return Boolean.TRUE;
+                }
+                if("false".equalsIgnoreCase(v) || "0".equals(v) || "off".equalsIgnoreCase(v) || "no".equalsIgnoreCase(v)){
+                    return Boolean.FALSE;
+                }
+                throw new IllegalArgumentException(value);
+            }
+        };
+        register(Boolean.class, booleanConverter);
+        register(boolean.class, booleanConverter);
+
+        MyConverter characterConverter = new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                if(value.length() != 1){
+                    throw new IllegalArgumentException(value);
+                }
+                return value.charAt(0);
+            }
+        };
+        register(Character.class, characterConverter);
+        register(char.class, characterConverter);
+
+        register(BigDecimal.class, new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return new BigDecimal(value.trim());
+            }
+        });
+        register(BigInteger.class, new MyConverter() {
+            @Override
+            public Object convert(String value) {
+                return new BigInteger(value.trim());
+            }
+        });
+    }
+
+    /**
+     * 注册自定义类型的转换器
+     * @param type
+     * @param converter
+     */
+    public static void register(Class<?> type, MyConverter converter) {
+        CONVERTERS.put(type, converter);
+    }
+
+    /**
+     * 获取类型对应的转换器,枚举类型会自动生成转换器
+     * @param type
+     * @return 不支持的类型返回null
+     */
+    public static MyConverter get(Class<?> type) {
+
+        MyConverter converter = CONVERTERS.get(type);
+        if(null == converter && type.isEnum()){
+            converter = new EnumConverter(type);
+            CONVERTERS.put(type, converter);
+        }
+        return converter;
+    }
+
+    /**
+     * 枚举转换器,按枚举常量的名称转换,初始化时把所有常量放入map中
+     */
+    private static class EnumConverter implements MyConverter {
+
+        private final Map<String, Object> constants = new HashMap<>();
+
+        public EnumConverter(Class<?> type) {
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+
+        @Override
+        public Object convert(String value) {
+            Object constant = constants.get(value.trim());
+            if(null == constant){
+                throw new IllegalArgumentException(value);
+            }
+            return constant;
+        }
+    }
+}
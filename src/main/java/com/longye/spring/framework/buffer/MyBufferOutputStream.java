@@ -0,0 +1,157 @@
+package com.longye.spring.framework.buffer;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 写入MyBufferPool中的块的输出流,写满一块再取下一块,不需要扩容和拷贝
+ * 字符串直接按UTF-8编码写入块中,不会先生成byte[]
+ * 内容写完后通过writeTo一次性输出,用完必须close把块还给池
+ */
+public class MyBufferOutputStream extends OutputStream {
+
+    //一个字符按UTF-8编码最多4个字节,一对代理字符一起编码
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final MyBufferPool pool;
+
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+
+    private int count;
+
+    private ByteBuffer current;
+
+    private int size;
+
+    public MyBufferOutputStream(MyBufferPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void write(int b) {
+
+        ensure();
+        current.put((byte) b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+
+        size += len;
+        while (len > 0) {
+            ensure();
+            int n = Math.min(len, current.remaining());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 按UTF-8编码写入字符串,不成对的代理字符写为?
+     * 先编码到线程的临时数组中,满了再整块拷贝进缓冲区,逐个字节写入堆外内存太慢
+     * @param s
+     */
+    public void writeUtf8(CharSequence s) {
+
+        byte[] buf = pool.scratch();
+        int limit = buf.length - MAX_CHAR_BYTES;
+        int pos = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if(pos > limit){
+                write(buf, 0, pos);
+                pos = 0;
+            }
+            char c = s.charAt(i);
+            if(c < 0x80){
+                //连续的ASCII字符在一个循环里写完,页面中大部分是这种字符
+                buf[pos++] = (byte) c;
+                int end = Math.min(length, i + 1 + buf.length - pos);
+                while (i + 1 < end && (c = s.charAt(i + 1)) < 0x80) {
+                    buf[pos++] = (byte) c;
+                    i++;
+                }
+            }else if(c < 0x800){
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))){
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buf[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+            }else if(Character.isSurrogate(c)){
+                buf[pos++] = '?';
+            }else{
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        write(buf, 0, pos);
+    }
+
+    /**
+     * 已经写入的字节数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 把写入的内容按顺序输出到out,堆外的块先拷贝到线程的临时数组
+     * @param out
+     * @throws java.io.IOException
+     */
+    public void writeTo(OutputStream out) throws java.io.IOException {
+
+        for (int i = 0; i < count; i++) {
+            ByteBuffer chunk = chunks[i];
+            int length = chunk.position();
+            if(chunk.hasArray()){
+                out.write(chunk.array(), chunk.arrayOffset(), length);
+                continue;
+            }
+            byte[] scratch = pool.scratch();
+            ByteBuffer source = chunk.duplicate();
+            source.flip();
+            while (source.hasRemaining()) {
+                int n = Math.min(source.remaining(), scratch.length);
+                source.get(scratch, 0, n);
+                out.write(scratch, 0, n);
+            }
+        }
+    }
+
+    /**
+     * 把所有的块还给池,之后不能再使用
+     */
+    @Override
+    public void close() {
+
+        for (int i = 0; i < count; i++) {
+            pool.release(chunks[i]);
+            chunks[i] = null;
+        }
+        count = 0;
+        current = null;
+    }
+
+    /**
+     * 当前块写满时取下一块
+     */
+    private void ensure() {
+
+        if(null != current && current.hasRemaining()){
+            return;
+        }
+        if(count == chunks.length){
+            chunks = Arrays.copyOf(chunks, count * 2);
+        }
+        current = pool.acquire();
+        chunks[count++] = current;
+    }
+}
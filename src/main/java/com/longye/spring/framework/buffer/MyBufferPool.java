@@ -0,0 +1,136 @@
+package com.longye.spring.framework.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定大小的堆外内存块池,渲染页面时用来拼装响应,不再为每次请求分配新的数组
+ * 所有线程共用一个无锁的池,块用完必须release,所以分配过的堆外内存块要么正在使用要么在池中,线程结束时不会带走任何块
+ * 堆外内存的总量不超过maxBytes,全部块都在使用时退化为分配堆内存,这些堆内存块用完后不放回池中
+ */
+public class MyBufferPool {
+
+    private final int chunkSize;
+
+    //最多分配的堆外内存块数
+    private final int maxChunks;
+
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+
+    //池中空闲的块数,ConcurrentLinkedQueue的size()需要遍历
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    //已经分配的堆外内存块数,包括正在使用的和池中的
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    //编码字符串和把堆外内存拷贝到OutputStream时使用的数组,每个线程一个
+    private final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[chunkSize];
+        }
+    };
+
+    private final LongAdder acquires = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder heapAllocations = new LongAdder();
+
+    /**
+     * @param chunkSize 每个块的字节数
+     * @param maxBytes 堆外内存的上限
+     */
+    public MyBufferPool(int chunkSize, long maxBytes) {
+
+        this.chunkSize = chunkSize;
+        this.maxChunks = (int) Math.min(Integer.MAX_VALUE, maxBytes / chunkSize);
+    }
+
+    /**
+     * 获取一个块,position为0,limit为容量
+     * @return 堆外内存用完时返回堆内存的块
+     */
+    public ByteBuffer acquire() {
+
+        acquires.increment();
+        ByteBuffer buffer = pool.poll();
+        if(null != buffer){
+            pooled.decrementAndGet();
+            hits.increment();
+            return buffer;
+        }
+
+        //还没有达到上限时分配新的堆外内存
+        while (true) {
+            int current = allocated.get();
+            if(current >= maxChunks){
+                heapAllocations.increment();
+                return ByteBuffer.allocate(chunkSize);
+            }
+            if(allocated.compareAndSet(current, current + 1)){
+                return ByteBuffer.allocateDirect(chunkSize);
+            }
+        }
+    }
+
+    /**
+     * 归还块,堆内存的块直接丢弃
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+
+        if(!buffer.isDirect()){
+            return;
+        }
+        buffer.clear();
+        pool.offer(buffer);
+        pooled.incrementAndGet();
+    }
+
+    /**
+     * 当前线程的临时数组,大小和块一样,用于编码字符串和把堆外内存拷贝到OutputStream
+     */
+    byte[] scratch() {
+        return scratch.get();
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getAcquires() {
+        return acquires.sum();
+    }
+
+    /**
+     * 从池中取到块的次数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 堆外内存用完后分配堆内存的次数,一直增长说明maxBytes太小
+     */
+    public long getHeapAllocations() {
+        return heapAllocations.sum();
+    }
+
+    /**
+     * 已经分配的堆外内存字节数
+     */
+    public long getAllocatedBytes() {
+        return (long) allocated.get() * chunkSize;
+    }
+
+    /**
+     * 池中空闲的块数
+     */
+    public int getPooled() {
+        return pooled.get();
+    }
+}
@@ -0,0 +1,240 @@
+package com.longye.spring.framework.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 响应压缩,根据请求的Accept-Encoding选择gzip或deflate
+ * Deflater创建和销毁的开销都比较大(需要分配本地内存),这里按编码方式放在池中复用
+ */
+public class MyCompression {
+
+    /**
+     * 支持的压缩方式
+     */
+    public enum Encoding {
+
+        GZIP("gzip", true), DEFLATE("deflate", false);
+
+        private final String token;
+
+        //gzip自己写头和尾,Deflater只输出原始的deflate数据;HTTP中的deflate是带zlib头的格式
+        private final boolean nowrap;
+
+        Encoding(String token, boolean nowrap) {
+            this.token = token;
+            this.nowrap = nowrap;
+        }
+
+        /**
+         * Content-Encoding的值
+         */
+        public String getToken() {
+            return token;
+        }
+    }
+
+    //每种压缩方式最多缓存的Deflater数
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 4;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    //gzip的文件头: 魔数、压缩方法、标志位、修改时间、额外标志和操作系统
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final BlockingQueue<Deflater> GZIP_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final BlockingQueue<Deflater> DEFLATE_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private MyCompression() {
+    }
+
+    /**
+     * 根据Accept-Encoding选择压缩方式,优先使用gzip,q=0表示不接受
+     * @param acceptEncoding 请求头Accept-Encoding的值
+     * @return 不需要压缩时为null
+     */
+    public static Encoding negotiate(String acceptEncoding) {
+
+        if(null == acceptEncoding || acceptEncoding.isEmpty()){
+            return null;
+        }
+
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String token = part.trim();
+            double q = 1;
+            int semicolon = token.indexOf(';');
+            if(semicolon >= 0){
+                q = parseQuality(token.substring(semicolon + 1));
+                token = token.substring(0, semicolon).trim();
+            }
+            if("gzip".equalsIgnoreCase(token) || "x-gzip".equalsIgnoreCase(token)){
+                gzip = q;
+            }else if("deflate".equalsIgnoreCase(token)){
+                deflate = q;
+            }else if("*".equals(token)){
+                any = q;
+            }
+        }
+        //没有明确列出的编码使用*的权重
+        if(gzip < 0){
+            gzip = any;
+        }
+        if(deflate < 0){
+            deflate = any;
+        }
+        if(gzip > 0 && gzip >= deflate){
+            return Encoding.GZIP;
+        }
+        if(deflate > 0){
+            return Encoding.DEFLATE;
+        }
+        return null;
+    }
+
+    private static double parseQuality(String param) {
+
+        param = param.trim();
+        if(!param.startsWith("q=")){
+            return 1;
+        }
+        try {
+            return Double.parseDouble(param.substring(2).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 包装输出流,写入的内容压缩后写入out
+     * 返回的流close()时只结束压缩并归还Deflater,不会关闭out
+     * @param out
+     * @param encoding
+     * @return
+     * @throws IOException
+     */
+    public static OutputStream wrap(OutputStream out, Encoding encoding) throws IOException {
+        return new CompressingOutputStream(out, encoding);
+    }
+
+    /**
+     * 一次性压缩全部内容,用于没有占位符的页面等固定的内容
+     * @param data
+     * @param encoding
+     * @return
+     */
+    public static byte[] compress(byte[] data, Encoding encoding) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (OutputStream compressing = wrap(out, encoding)) {
+            compressing.write(data);
+        } catch (IOException e) {
+            //写入内存不会出现IO异常
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static Deflater acquire(Encoding encoding) {
+
+        Deflater deflater = pool(encoding).poll();
+        return null == deflater ? new Deflater(Deflater.DEFAULT_COMPRESSION, encoding.nowrap) : deflater;
+    }
+
+    /**
+     * 归还Deflater,池满了直接释放本地内存
+     */
+    private static void release(Encoding encoding, Deflater deflater) {
+
+        deflater.reset();
+        if(!pool(encoding).offer(deflater)){
+            deflater.end();
+        }
+    }
+
+    private static BlockingQueue<Deflater> pool(Encoding encoding) {
+        return encoding == Encoding.GZIP ? GZIP_POOL : DEFLATE_POOL;
+    }
+
+    /**
+     * 使用池中的Deflater压缩,gzip时自己写入文件头和CRC校验
+     */
+    private static class CompressingOutputStream extends DeflaterOutputStream {
+
+        private final Encoding encoding;
+
+        private final CRC32 crc;
+
+        private boolean closed;
+
+        CompressingOutputStream(OutputStream out, Encoding encoding) throws IOException {
+
+            super(out, acquire(encoding), BUFFER_SIZE);
+            this.encoding = encoding;
+            if(encoding == Encoding.GZIP){
+                crc = new CRC32();
+                out.write(GZIP_HEADER);
+            }else{
+                crc = null;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            super.write(b, off, len);
+            if(null != crc){
+                crc.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void finish() throws IOException {
+
+            super.finish();
+            if(null != crc){
+                //gzip的结尾: CRC32和原始长度,都是小端序
+                writeInt((int) crc.getValue());
+                writeInt((int) def.getBytesRead());
+            }
+        }
+
+        /**
+         * 结束压缩并归还Deflater,不关闭底层的输出流
+         */
+        @Override
+        public void close() throws IOException {
+
+            if(closed){
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+            } finally {
+                release(encoding, def);
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+}
@@ -2,30 +2,45 @@ package com.longye.spring.framework.context;
 
 import com.longye.spring.framework.annotation.MyAutowired;
 import com.longye.spring.framework.annotation.MyController;
+import com.longye.spring.framework.annotation.MyControllerAdvice;
+import com.longye.spring.framework.annotation.MyInterceptor;
+import com.longye.spring.framework.annotation.MyLazy;
 import com.longye.spring.framework.annotation.MyService;
+import com.longye.spring.framework.index.MyComponentIndex;
 
-import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by tianl on 2018/10/17.
  */
 public class ApplicationContext {
 
-    //IOC容器
-    private static ConcurrentHashMap<String,Object> IOC = new ConcurrentHashMap<>();
+    //IOC容器,运行时也可以通过registerBean和unregisterBean修改
+    private static final ConcurrentHashMap<String,Object> IOC = new ConcurrentHashMap<>();
 
-    //用来存放class文件名称的容器。比如com.longye.spring.demo.controller.TestController
-    private static List<String> classList = new ArrayList<>();
+    //用来存放class文件名称的容器。比如com.longye.spring.demo.controller.TestController,只在initIOC时使用
+    private static final List<String> classList = new ArrayList<>();
 
-    private static Properties properties = new Properties();
+    //Properties本身是线程安全的
+    private static final Properties properties = new Properties();
+
+    //编译时生成的组件索引,没有索引时为null
+    private static volatile MyComponentIndex componentIndex;
+
+    //启动耗时统计,initIOC时创建,MyDispatcherServlet继续记录它自己的初始化阶段
+    private static volatile MyStartupProfiler startupProfiler;
 
     /**
      * 初始化IOC容器
@@ -34,6 +49,8 @@ public class ApplicationContext {
     public static void initIOC(String location){
 
         InputStream is = null;
+        startupProfiler = new MyStartupProfiler();
+        long time = System.nanoTime();
 
         try {
             //1、定位需要解析的配置文件
@@ -42,24 +59,87 @@ public class ApplicationContext {
             //2、加载该配置文件
             Properties properties = getProperties();
             properties.load(is);
+            time = startupProfiler.phase("loadProperties", time);
 
-            //3、获取扫描包下所有的类文件的名字
             String scanPackage = properties.getProperty("scanPackage");
-            doRegister(scanPackage);
 
-            //4、实例化所有带MyController和MyService注解的类至IOC容器
-            doCreateBean();
+            //编译时生成了组件索引的话,直接根据索引实例化,不需要再扫描classpath
+            componentIndex = loadComponentIndex(scanPackage);
+            time = startupProfiler.phase("loadComponentIndex", time);
+            if(null != componentIndex){
+                doCreateBean(componentIndex, scanPackage);
+                time = startupProfiler.phase("createBean", time);
+            }else{
+                //扫描和实例化都在该线程池中并行执行
+                ForkJoinPool pool = new ForkJoinPool();
+                try {
+                    MyClassScanner scanner = new MyClassScanner(ApplicationContext.class.getClassLoader(), pool);
+
+                    //3、获取扫描包下所有的类文件的名字
+                    doRegister(scanner, scanPackage);
+                    time = startupProfiler.phase("scan", time);
+
+                    //4、实例化所有带MyController和MyService注解的类至IOC容器
+                    doCreateBean(scanner, pool);
+                    time = startupProfiler.phase("createBean", time);
+                } finally {
+                    pool.shutdown();
+                }
+            }
 
             //5、实现依赖注入
             doPopulate();
+            startupProfiler.phase("populate", time);
 
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            if(null != is){
+                try {
+                    is.close();
+                } catch (IOException ignored) {
+                }
+            }
         }
 
         System.out.println("IOC容器已经初始化完成......");
     }
 
+    /**
+     * 关闭IOC容器,清空所有的bean和配置,之后可以重新initIOC
+     */
+    public static void close() {
+
+        IOC.clear();
+        classList.clear();
+        properties.clear();
+        componentIndex = null;
+        startupProfiler = null;
+    }
+
+    /**
+     * 运行时注册bean,先注入依赖再放入IOC容器,其他线程取到的一定是注入完成的bean
+     * @param key
+     * @param bean
+     * @throws IllegalStateException key已经存在
+     */
+    public static void registerBean(String key, Object bean) {
+
+        populate(bean);
+        if(null != IOC.putIfAbsent(key, bean)){
+            throw new IllegalStateException("IOC容器中已经存在bean: " + key);
+        }
+    }
+
+    /**
+     * 运行时移除bean的所有key
+     * @param bean
+     * @return bean不在IOC容器中时返回false
+     */
+    public static boolean unregisterBean(Object bean) {
+        return IOC.values().removeIf(value -> value == bean);
+    }
+
     /**
      * 依赖注入,对IOC容器里的bean中添加MyAutowired注解的属性进行赋值
      */
@@ -69,106 +149,241 @@ public class ApplicationContext {
             return;
         }
 
-        for (Map.Entry<String, Object> entry : IOC.entrySet()) {
-
-            Field[] fields = entry.getValue().getClass().getDeclaredFields();
-            for (Field field : fields) {
-                if(field.isAnnotationPresent(MyAutowired.class)){
-                    MyAutowired myAutowired = field.getAnnotation(MyAutowired.class);
-                    String value = myAutowired.value();
-                    if(value.equals("")){//说明未自定义,是使用的接口名来作为的key
-                        value = field.getType().getName();
-                    }
-
-                    //开发私有属性的访问权限
-                    field.setAccessible(true);
-
-                    try {
-                        field.set(entry.getValue(),IOC.get(value));
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                }
+        //同一个bean可能以多个key存放在IOC容器中,只需要注入一次
+        Set<Object> beans = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        beans.addAll(IOC.values());
+        for (Object bean : beans) {
+            //延迟初始化的bean在第一次使用时才注入
+            if(!MyLazyBean.isProxy(bean)){
+                long start = System.nanoTime();
+                populate(bean);
+                startupProfiler.bean(bean.getClass(), start);
             }
         }
     }
 
     /**
-     * 实例化所有需要实例化的bean(带MyController和MyService注解的)至IOC容器中
+     * 对一个bean中添加MyAutowired注解的属性进行赋值
+     * @param bean
      */
-    private static void doCreateBean() {
+    static void populate(Object bean) {
 
-        try {
-            for (String className : classList) {
-                Class<?> clazz = Class.forName(className);
-                if(clazz.isAnnotationPresent(MyController.class)){
-                    //IOC中的bean对应的key。这里规则是类名首字母小写。比如testController
-                    String key = lowerFirstChar(clazz.getSimpleName());
-                    IOC.put(key, clazz.newInstance());
-                }
+        //索引中已经记录了注入点,不需要再遍历所有的属性
+        MyComponentIndex.Component component = null == componentIndex ? null : componentIndex.getComponent(bean.getClass().getName());
+        if(null != component){
+            doPopulate(bean, component);
+            return;
+        }
 
-                if(clazz.isAnnotationPresent(MyService.class)){
-                    MyService myService = clazz.getAnnotation(MyService.class);
-                    //因为我们注入业务类的bean至其他类中时,一般注入的都是接口。比如：@MyAutowired private AppleService appleService
-                    //所以当该bean自定义了名称时,则使用该名称作为该bean的key.当其他类中注入该bean的时候,MyAutowired注解需要指定该名称
-                    //当该bean没有自定义名称时,我们需要把该bean的接口名称作为该bean的key。这样依赖注入的时候就可以根据该接口名获取到IOC容器中bean
-                    String value = myService.value();
-                    if(!value.equals("")){
-                        IOC.put(value, clazz.newInstance());
-                        continue;
-                    }
-
-                    Class<?>[] interfaces = clazz.getInterfaces();
-                    for (Class<?> i : interfaces) {
-                        //key = com.longye.spring.demo.service.AppleService
-                        String key = i.getName();
-                        IOC.put(key, clazz.newInstance());
-                    }
+        Field[] fields = bean.getClass().getDeclaredFields();
+        for (Field field : fields) {
+            if(field.isAnnotationPresent(MyAutowired.class)){
+                MyAutowired myAutowired = field.getAnnotation(MyAutowired.class);
+                String value = myAutowired.value();
+                if(value.equals("")){//说明未自定义,是使用的接口名来作为的key
+                    value = field.getType().getName();
                 }
+
+                //开发私有属性的访问权限
+                field.setAccessible(true);
+                inject(bean, field, value);
             }
-        } catch (Exception e) {
+        }
+    }
+
+    /**
+     * 给属性赋值,类型不匹配时只跳过这个属性,不影响其他属性和bean的注入
+     * @param bean
+     * @param field
+     * @param key 要注入的bean在IOC容器中的key
+     */
+    private static void inject(Object bean, Field field, String key) {
+
+        Object value = IOC.get(key);
+        try {
+            field.set(bean, value);
+        } catch (IllegalArgumentException e) {
+            //延迟初始化的bean是接口的代理,不能注入到声明为实现类的属性中
+            System.out.println("无法注入" + bean.getClass().getName() + "." + field.getName() + ": " + value.getClass().getName()
+                    + "不能赋值给" + field.getType().getName() + (MyLazyBean.isProxy(value) ? ",@MyLazy的bean只能按接口注入" : ""));
+        } catch (IllegalAccessException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * 注册需要扫描的路径下的所有类的名称至容器classList
-     * @param scanPackage 待扫描的路径
+     * 根据组件索引对bean进行依赖注入
+     * @param bean
+     * @param component
      */
-    private static void doRegister(String scanPackage) {
+    private static void doPopulate(Object bean, MyComponentIndex.Component component) {
+
+        for (MyComponentIndex.Injection injection : component.getInjections()) {
+            try {
+                Field field = bean.getClass().getDeclaredField(injection.getFieldName());
+                field.setAccessible(true);
+                inject(bean, field, injection.getKey());
+            } catch (NoSuchFieldException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-        //scanPackage = com.longye.spring.demo
-        //packageFile = com/longye/spring/demo
-        String packageFile = scanPackage.replaceAll("\\.", "/");
+    /**
+     * 读取编译时生成的组件索引
+     * 配置了componentIndex=false,索引中没有扫描包下的组件,或者索引中的类已经不存在时返回null,此时需要扫描classpath
+     * @param scanPackage
+     * @return
+     */
+    private static MyComponentIndex loadComponentIndex(String scanPackage) throws IOException {
 
-        //url = file:/D:/writeBySelf/my_spring/target/classes/com/longye/spring/demo
-        //需要注意的是packageFile下必须要有文件,否则获取到的URL为null
-        URL url = ApplicationContext.class.getClassLoader().getResource(packageFile);
+        if(!Boolean.parseBoolean(properties.getProperty("componentIndex", "true"))){
+            return null;
+        }
+        ClassLoader classLoader = ApplicationContext.class.getClassLoader();
+        MyComponentIndex index = MyComponentIndex.load(classLoader);
+        if(null == index || index.getComponents(scanPackage).isEmpty()){
+            return null;
+        }
+        for (MyComponentIndex.Component component : index.getComponents(scanPackage)) {
+            try {
+                Class.forName(component.getClassName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                System.out.println("组件索引已过期,找不到" + component.getClassName() + ",改为扫描" + scanPackage + "......");
+                return null;
+            }
+        }
+        return index;
+    }
 
-        File dir = new File(url.getFile());
-        for (File file : dir.listFiles()) {
-            if(file.isDirectory()){
-                doRegister(scanPackage + "." + file.getName());
+    /**
+     * 根据组件索引实例化bean,bean的key在编译时已经确定好了
+     * @param index
+     * @param scanPackage
+     */
+    private static void doCreateBean(MyComponentIndex index, String scanPackage) throws Exception {
+
+        for (MyComponentIndex.Component component : index.getComponents(scanPackage)) {
+            Class<?> clazz = Class.forName(component.getClassName(), false, ApplicationContext.class.getClassLoader());
+            registerBean(clazz, Arrays.asList(component.getKeys()), component.isLazy());
+        }
+    }
+
+    /**
+     * 实例化所有需要实例化的bean(带MyController、MyService、MyInterceptor和MyControllerAdvice注解的)至IOC容器中
+     * 类的加载检查和实例化都是并行的,IOC容器本身是ConcurrentHashMap
+     */
+    private static void doCreateBean(MyClassScanner scanner, ForkJoinPool pool) throws Exception {
+
+        List<Class<?>> components = scanner.findAnnotated(classList, MyController.class, MyService.class,
+                MyInterceptor.class, MyControllerAdvice.class);
+
+        pool.submit(() -> components.parallelStream().forEach(ApplicationContext::createBean)).get();
+    }
+
+    /**
+     * 实例化一个bean并放入IOC容器
+     * @param clazz
+     */
+    private static void createBean(Class<?> clazz) {
+
+        List<String> keys = new ArrayList<>();
+        if(clazz.isAnnotationPresent(MyController.class) || clazz.isAnnotationPresent(MyInterceptor.class)
+                || clazz.isAnnotationPresent(MyControllerAdvice.class)){
+            //IOC中的bean对应的key。这里规则是类名首字母小写。比如testController
+            keys.add(MyComponentIndex.beanName(clazz.getSimpleName()));
+        }
+
+        if(clazz.isAnnotationPresent(MyService.class)){
+            MyService myService = clazz.getAnnotation(MyService.class);
+            //因为我们注入业务类的bean至其他类中时,一般注入的都是接口。比如：@MyAutowired private AppleService appleService
+            //所以当该bean自定义了名称时,则使用该名称作为该bean的key.当其他类中注入该bean的时候,MyAutowired注解需要指定该名称
+            //当该bean没有自定义名称时,我们需要把该bean的接口名称作为该bean的key。这样依赖注入的时候就可以根据该接口名获取到IOC容器中bean
+            String value = myService.value();
+            if(!value.equals("")){
+                keys.add(value);
             }else{
-                //className = TestController.class
-                String className = file.getName();
-                classList.add(scanPackage + "." + className.replaceAll(".class", ""));
+                Class<?>[] interfaces = clazz.getInterfaces();
+                for (Class<?> i : interfaces) {
+                    //key = com.longye.spring.demo.service.AppleService
+                    keys.add(i.getName());
+                }
+            }
+        }
+
+        registerBean(clazz, keys, clazz.isAnnotationPresent(MyLazy.class));
+    }
+
+    /**
+     * 实例化bean,并以所有的key放入IOC容器,同一个类只有一个实例
+     * @param clazz
+     * @param keys
+     * @param lazy 是否延迟初始化,延迟初始化的bean放入的是它接口的代理
+     */
+    private static void registerBean(Class<?> clazz, List<String> keys, boolean lazy) {
+
+        long start = System.nanoTime();
+        try {
+            Object bean = null;
+            if(lazy && !clazz.isAnnotationPresent(MyController.class)){
+                bean = MyLazyBean.createProxy(clazz);
+                if(null == bean){
+                    System.out.println(clazz.getName() + "没有实现任何接口,无法延迟初始化");
+                }
+            }
+            if(null == bean){
+                bean = clazz.newInstance();
+            }
+
+            for (String key : keys) {
+                IOC.put(key, bean);
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            startupProfiler.bean(clazz, start);
         }
     }
 
-    private static String lowerFirstChar(String letter) {
+    /**
+     * 注册需要扫描的路径下的所有类的名称至容器classList
+     * 支持class目录和jar/war包
+     * @param scanner
+     * @param scanPackage 待扫描的路径
+     */
+    private static void doRegister(MyClassScanner scanner, String scanPackage) throws IOException {
 
-        char[] chars = letter.toCharArray();
-        chars[0] += 32;
-        return String.valueOf(chars);
+        //scanPackage = com.longye.spring.demo
+        long start = System.nanoTime();
+        classList.addAll(scanner.scan(scanPackage));
+        startupProfiler.scan(scanPackage, start);
     }
 
     public static ConcurrentHashMap<String, Object> getIOC() {
         return IOC;
     }
 
+    /**
+     * bean的实际类型,@MyLazy的bean在IOC容器中是接口的代理,读取类上的注解时需要用实际的类
+     * @param bean
+     * @return
+     */
+    public static Class<?> getBeanClass(Object bean) {
+        return MyLazyBean.beanClass(bean);
+    }
+
     public static Properties getProperties() {
         return properties;
     }
+
+    /**
+     * 启动耗时统计,initIOC之前或者close之后为null
+     */
+    public static MyStartupProfiler getStartupProfiler() {
+        return startupProfiler;
+    }
+
+    public static MyComponentIndex getComponentIndex() {
+        return componentIndex;
+    }
 }
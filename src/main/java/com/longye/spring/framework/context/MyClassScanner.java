@@ -0,0 +1,194 @@
+package com.longye.spring.framework.context;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * 类扫描器
+ * 同时支持编译后的class目录和jar/war包中的class,都通过NIO的Path来遍历。jar包通过zipfs打开
+ * 目录的遍历和类的加载检查都在ForkJoinPool中并行执行
+ */
+public class MyClassScanner {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final ClassLoader classLoader;
+
+    private final ForkJoinPool pool;
+
+    public MyClassScanner(ClassLoader classLoader, ForkJoinPool pool) {
+        this.classLoader = classLoader;
+        this.pool = pool;
+    }
+
+    /**
+     * 获取扫描包下所有类的名称,包括子包
+     * @param scanPackage 比如com.longye.spring.demo
+     * @return 比如com.longye.spring.demo.controller.TestController
+     * @throws IOException
+     */
+    public List<String> scan(String scanPackage) throws IOException {
+
+        //packageFile = com/longye/spring/demo
+        String packageFile = scanPackage.replace('.', '/');
+
+        List<String> classNames = new ArrayList<>();
+        //同一个包可能分布在多个目录或jar包中
+        Enumeration<URL> urls = classLoader.getResources(packageFile);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            String protocol = url.getProtocol();
+            if("file".equals(protocol)){
+                Path dir = toPath(url);
+                classNames.addAll(pool.invoke(new DirectoryTask(dir, scanPackage)));
+            }else if("jar".equals(protocol) || "war".equals(protocol) || "zip".equals(protocol)){
+                classNames.addAll(scanArchive(url, packageFile, scanPackage));
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * 并行加载并检查类,返回带有指定注解的类
+     * 加载时不执行类的静态初始化,无法加载的类直接跳过
+     * @param classNames
+     * @param annotations
+     * @return
+     */
+    @SafeVarargs
+    public final List<Class<?>> findAnnotated(List<String> classNames, final Class<? extends Annotation>... annotations) {
+
+        try {
+            return pool.submit(() -> classNames.parallelStream()
+                    .map(this::loadClass)
+                    .filter(clazz -> null != clazz && isAnnotated(clazz, annotations))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Class<?> loadClass(String className) {
+
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            System.out.println("无法加载类" + className + ": " + e);
+            return null;
+        }
+    }
+
+    private static boolean isAnnotated(Class<?> clazz, Class<? extends Annotation>[] annotations) {
+
+        for (Class<? extends Annotation> annotation : annotations) {
+            if(clazz.isAnnotationPresent(annotation)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 扫描jar/war包中的类
+     * url = jar:file:/opt/app/lib/app.jar!/com/longye/spring/demo
+     */
+    private List<String> scanArchive(URL url, String packageFile, String scanPackage) throws IOException {
+
+        String spec = url.toString();
+        int separator = spec.indexOf("!/");
+        if(separator < 0){
+            return Collections.emptyList();
+        }
+        //只取外层的包,jar包中再嵌套的jar不支持
+        String archive = spec.substring(spec.indexOf(':') + 1, separator);
+        Path archivePath;
+        try {
+            archivePath = Paths.get(new URI(archive));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("无法解析的包路径: " + url, e);
+        }
+
+        try (FileSystem fileSystem = FileSystems.newFileSystem(archivePath, (ClassLoader) null)) {
+            Path root = fileSystem.getPath(spec.substring(separator + 1));
+            if(!Files.isDirectory(root)){
+                root = fileSystem.getPath("/" + packageFile);
+            }
+            return pool.invoke(new DirectoryTask(root, scanPackage));
+        }
+    }
+
+    private static Path toPath(URL url) throws IOException {
+
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("无法解析的目录: " + url, e);
+        }
+    }
+
+    /**
+     * 扫描一个目录,子目录拆分成新的任务并行扫描
+     */
+    private static class DirectoryTask extends RecursiveTask<List<String>> {
+
+        private final Path dir;
+
+        private final String packageName;
+
+        public DirectoryTask(Path dir, String packageName) {
+            this.dir = dir;
+            this.packageName = packageName;
+        }
+
+        @Override
+        protected List<String> compute() {
+
+            List<String> classNames = new ArrayList<>();
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    //jar包中的目录名以/结尾
+                    String name = path.getFileName().toString();
+                    if(name.endsWith("/")){
+                        name = name.substring(0, name.length() - 1);
+                    }
+                    if(Files.isDirectory(path)){
+                        DirectoryTask task = new DirectoryTask(path, packageName + "." + name);
+                        task.fork();
+                        subTasks.add(task);
+                    }else if(name.endsWith(CLASS_SUFFIX)){
+                        //className = TestController.class
+                        classNames.add(packageName + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("无法扫描目录: " + dir, e);
+            }
+
+            for (DirectoryTask task : subTasks) {
+                classNames.addAll(task.join());
+            }
+            return classNames;
+        }
+    }
+}
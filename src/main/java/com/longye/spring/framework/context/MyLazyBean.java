@@ -0,0 +1,84 @@
+package com.longye.spring.framework.context;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * 延迟初始化的bean
+ * IOC容器中存放的是实现了该bean所有接口的代理,第一次调用代理的方法时才实例化bean并进行依赖注入,只会初始化一次
+ */
+class MyLazyBean implements InvocationHandler {
+
+    private final Class<?> beanClass;
+
+    private volatile Object target;
+
+    private MyLazyBean(Class<?> beanClass) {
+        this.beanClass = beanClass;
+    }
+
+    /**
+     * 创建bean的代理
+     * @param beanClass
+     * @return 没有实现任何接口的类无法代理,返回null
+     */
+    static Object createProxy(Class<?> beanClass) {
+
+        Class<?>[] interfaces = beanClass.getInterfaces();
+        if(interfaces.length == 0){
+            return null;
+        }
+        return Proxy.newProxyInstance(beanClass.getClassLoader(), interfaces, new MyLazyBean(beanClass));
+    }
+
+    /**
+     * 是否是延迟初始化bean的代理
+     * @param bean
+     * @return
+     */
+    static boolean isProxy(Object bean) {
+
+        return Proxy.isProxyClass(bean.getClass()) && Proxy.getInvocationHandler(bean) instanceof MyLazyBean;
+    }
+
+    /**
+     * bean真正的类,代理上没有bean类的注解
+     * @param bean
+     * @return 不是延迟初始化的bean时为bean.getClass()
+     */
+    static Class<?> beanClass(Object bean) {
+
+        return isProxy(bean) ? ((MyLazyBean) Proxy.getInvocationHandler(bean)).beanClass : bean.getClass();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+        try {
+            return method.invoke(getTarget(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 获取真正的bean,第一次调用时实例化
+     */
+    private Object getTarget() throws Exception {
+
+        Object t = target;
+        if(null == t){
+            synchronized (this) {
+                t = target;
+                if(null == t){
+                    t = beanClass.newInstance();
+                    ApplicationContext.populate(t);
+                    target = t;
+                }
+            }
+        }
+        return t;
+    }
+}
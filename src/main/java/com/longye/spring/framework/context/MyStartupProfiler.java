@@ -0,0 +1,115 @@
+package com.longye.spring.framework.context;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 启动耗时统计,记录每个初始化阶段、每个bean和每个包的耗时,启动完成后输出报告,用来找出拖慢启动的地方
+ * bean可能是并行实例化的,bean和包的耗时使用并发容器累加;阶段只在初始化的线程中记录
+ */
+public class MyStartupProfiler {
+
+    //报告中输出的最慢的bean数
+    private static final int TOP_BEANS = 10;
+
+    private final long startTime = System.nanoTime();
+
+    //按执行顺序记录的阶段名和耗时
+    private final List<String> phaseNames = new ArrayList<>();
+
+    private final List<Long> phaseNanos = new ArrayList<>();
+
+    //key为bean的类名,值为实例化和依赖注入的耗时
+    private final Map<String, LongAdder> beans = new ConcurrentHashMap<>();
+
+    //key为包名,值为扫描该包和实例化包中bean的耗时
+    private final Map<String, LongAdder> packages = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一个阶段的耗时
+     * @param name 阶段名
+     * @param start 阶段开始的时间
+     * @return 当前时间,作为下一个阶段开始的时间
+     */
+    public long phase(String name, long start) {
+
+        long now = System.nanoTime();
+        phaseNames.add(name);
+        phaseNanos.add(now - start);
+        return now;
+    }
+
+    /**
+     * 累加一个bean的耗时,同时计入它所在的包
+     * @param clazz
+     * @param start
+     */
+    public void bean(Class<?> clazz, long start) {
+
+        long nanos = System.nanoTime() - start;
+        add(beans, clazz.getName(), nanos);
+        Package pkg = clazz.getPackage();
+        add(packages, null == pkg ? "" : pkg.getName(), nanos);
+    }
+
+    /**
+     * 累加扫描一个包的耗时
+     * @param packageName
+     * @param start
+     */
+    public void scan(String packageName, long start) {
+        add(packages, packageName, System.nanoTime() - start);
+    }
+
+    private static void add(Map<String, LongAdder> map, String key, long nanos) {
+        map.computeIfAbsent(key, k -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * 从开始统计到现在的总耗时,单位纳秒
+     */
+    public long getElapsed() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * 输出启动报告:总耗时、每个阶段、每个包和最慢的几个bean
+     * @param out
+     */
+    public void print(PrintStream out) {
+
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("MySpring 启动耗时 ").append(millis(getElapsed())).append('\n');
+        sb.append("  阶段:\n");
+        for (int i = 0; i < phaseNames.size(); i++) {
+            sb.append("    ").append(phaseNames.get(i)).append(' ').append(millis(phaseNanos.get(i))).append('\n');
+        }
+
+        if(!packages.isEmpty()){
+            sb.append("  包:\n");
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(packages).entrySet()) {
+                sb.append("    ").append(entry.getKey()).append(' ').append(millis(entry.getValue().sum())).append('\n');
+            }
+        }
+
+        if(!beans.isEmpty()){
+            List<Map.Entry<String, LongAdder>> sorted = new ArrayList<>(beans.entrySet());
+            sorted.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+            sb.append("  bean(最慢的").append(Math.min(TOP_BEANS, sorted.size())).append("个,共").append(sorted.size()).append("个):\n");
+            for (Map.Entry<String, LongAdder> entry : sorted.subList(0, Math.min(TOP_BEANS, sorted.size()))) {
+                sb.append("    ").append(entry.getKey()).append(' ').append(millis(entry.getValue().sum())).append('\n');
+            }
+        }
+        out.print(sb);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,230 @@
+package com.longye.spring.framework.exception;
+
+import com.longye.spring.framework.annotation.MyExceptionHandler;
+import com.longye.spring.framework.annotation.MyResponseBody;
+import com.longye.spring.framework.servlet.MyInvoker;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 根据异常类型找到对应的@MyExceptionHandler方法
+ * 每个异常类只在第一次出现时查找一次,之后直接从缓存中取,出错时不再遍历处理方法和比较继承关系
+ * controller的resolver找不到时交给parent,即@MyControllerAdvice中的全局处理方法
+ */
+public class MyExceptionResolver {
+
+    //缓存中表示没有对应的处理方法,ConcurrentHashMap不能存null
+    private static final Handler NONE = new Handler();
+
+    private final List<Handler> handlers;
+
+    private final MyExceptionResolver parent;
+
+    //key为异常类
+    private final Map<Class<?>, Handler> cache = new ConcurrentHashMap<>();
+
+    private MyExceptionResolver(List<Handler> handlers, MyExceptionResolver parent) {
+        this.handlers = handlers;
+        this.parent = parent;
+    }
+
+    /**
+     * 创建beans中所有@MyExceptionHandler方法的resolver
+     * @param beans controller或者@MyControllerAdvice对象
+     * @param parent 找不到处理方法时使用的resolver,可以为null
+     * @return 没有处理方法时直接返回parent,共用parent的缓存
+     * @throws ServletException 处理方法的声明有误
+     */
+    public static MyExceptionResolver create(List<?> beans, MyExceptionResolver parent) throws ServletException {
+
+        List<Handler> handlers = new ArrayList<>();
+        for (Object bean : beans) {
+            for (Method method : bean.getClass().getDeclaredMethods()) {
+                MyExceptionHandler annotation = method.getAnnotation(MyExceptionHandler.class);
+                if(null != annotation){
+                    handlers.add(new Handler(bean, method, annotation));
+                }
+            }
+        }
+        if(handlers.isEmpty()){
+            return parent;
+        }
+        return new MyExceptionResolver(handlers, parent);
+    }
+
+    /**
+     * 查找异常对应的处理方法
+     * @param exceptionType
+     * @return 没有对应的处理方法时为null
+     */
+    public Handler resolve(Class<? extends Throwable> exceptionType) {
+
+        Handler handler = cache.get(exceptionType);
+        if(null == handler){
+            handler = find(exceptionType);
+            cache.putIfAbsent(exceptionType, handler);
+        }
+        return handler == NONE ? null : handler;
+    }
+
+    /**
+     * 继承层次最近的处理方法优先,同样近时先声明的优先
+     */
+    private Handler find(Class<? extends Throwable> exceptionType) {
+
+        Handler best = NONE;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Handler handler : handlers) {
+            for (Class<?> type : handler.types) {
+                int distance = distance(exceptionType, type);
+                if(distance < bestDistance){
+                    best = handler;
+                    bestDistance = distance;
+                }
+            }
+        }
+        if(best == NONE && null != parent){
+            Handler handler = parent.resolve(exceptionType);
+            return null == handler ? NONE : handler;
+        }
+        return best;
+    }
+
+    /**
+     * 子类到父类的继承层数,不是子类时为Integer.MAX_VALUE
+     */
+    private static int distance(Class<?> exceptionType, Class<?> type) {
+
+        int distance = 0;
+        for (Class<?> clazz = exceptionType; null != clazz; clazz = clazz.getSuperclass()) {
+            if(clazz == type){
+                return distance;
+            }
+            distance++;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 一个@MyExceptionHandler方法
+     */
+    public static class Handler {
+
+        //方法参数的来源
+        private static final int EXCEPTION = 0;
+
+        private static final int REQUEST = 1;
+
+        private static final int RESPONSE = 2;
+
+        private final Class<?>[] types;//处理的异常类型
+
+        private final int[] params;//每个方法参数的来源
+
+        private final int status;//响应的状态码,为0时根据异常确定
+
+        private final boolean responseBody;//返回值是否写成JSON
+
+        private final MyInvoker invoker;
+
+        private Handler() {
+            this.types = new Class<?>[0];
+            this.params = new int[0];
+            this.status = 0;
+            this.responseBody = false;
+            this.invoker = null;
+        }
+
+        private Handler(Object bean, Method method, MyExceptionHandler annotation) throws ServletException {
+
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.params = new int[parameterTypes.length];
+            Class<?> declared = null;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                Class<?> type = parameterTypes[i];
+                if(Throwable.class.isAssignableFrom(type)){
+                    params[i] = EXCEPTION;
+                    declared = type;
+                }else if(HttpServletRequest.class == type){
+                    params[i] = REQUEST;
+                }else if(HttpServletResponse.class == type){
+                    params[i] = RESPONSE;
+                }else{
+                    throw new ServletException("异常处理方法不支持的参数类型: " + type.getName() + ", " + method);
+                }
+            }
+
+            if(annotation.value().length > 0){
+                this.types = annotation.value();
+            }else if(null != declared){
+                this.types = new Class<?>[]{declared};
+            }else{
+                throw new ServletException("异常处理方法没有声明处理的异常类型: " + method);
+            }
+            if(null != declared){
+                for (Class<?> type : types) {
+                    if(!declared.isAssignableFrom(type)){
+                        throw new ServletException("异常处理方法的参数类型" + declared.getName() + "不能接收" + type.getName() + ", " + method);
+                    }
+                }
+            }
+
+            this.status = annotation.status();
+            this.responseBody = method.isAnnotationPresent(MyResponseBody.class)
+                    || method.getDeclaringClass().isAnnotationPresent(MyResponseBody.class);
+            try {
+                this.invoker = MyInvoker.create(bean, method);
+            } catch (IllegalAccessException e) {
+                throw new ServletException("无法访问异常处理方法: " + method, e);
+            }
+        }
+
+        /**
+         * 执行处理方法
+         * @param req
+         * @param resp
+         * @param e
+         * @return 方法的返回值
+         * @throws Exception
+         */
+        public Object invoke(HttpServletRequest req, HttpServletResponse resp, Throwable e) throws Exception {
+
+            Object[] args = new Object[params.length];
+            for (int i = 0; i < params.length; i++) {
+                switch (params[i]) {
+                    case REQUEST:
+                        args[i] = req;
+                        break;
+                    case RESPONSE:
+                        args[i] = resp;
+                        break;
+                    default:
+                        args[i] = e;
+                }
+            }
+            return invoker.invoke(args);
+        }
+
+        /**
+         * 响应的状态码,注解中没有指定时MyHttpException使用它自己的状态码,其他异常为500
+         */
+        public int getStatus(Throwable e) {
+
+            if(status > 0){
+                return status;
+            }
+            return e instanceof MyHttpException ? ((MyHttpException) e).getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+
+        public boolean isResponseBody() {
+            return responseBody;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.longye.spring.framework.exception;
+
+/**
+ * 带状态码的异常,用于参数错误、找不到接口等预期内的情况
+ * 不记录堆栈,大量错误请求时创建异常的开销和普通对象差不多
+ */
+public class MyHttpException extends RuntimeException {
+
+    private final int status;
+
+    public MyHttpException(int status, String message) {
+        this(status, message, null);
+    }
+
+    public MyHttpException(int status, String message, Throwable cause) {
+        //不记录堆栈,也不记录被抑制的异常
+        super(message, cause, false, false);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * 状态码对应的原因短语
+     * @param status
+     * @return
+     */
+    public static String reasonPhrase(int status) {
+
+        switch (status) {
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 413: return "Payload Too Large";
+            case 415: return "Unsupported Media Type";
+            case 429: return "Too Many Requests";
+            case 500: return "Internal Server Error";
+            case 503: return "Service Unavailable";
+            default: return status < 500 ? "Client Error" : "Server Error";
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.longye.spring.framework.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Array;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译时生成的组件索引
+ * 由MyComponentIndexProcessor在编译时写入META-INF/my-spring.components,启动时读取该文件就不需要再扫描和反射检查所有的类
+ * 文件每行一条记录,字段之间用tab分隔:
+ * component  类名  controller/service/interceptor/advice  bean的key(多个用,分隔)  是否延迟初始化
+ * autowired  类名  属性名  注入的bean的key
+ * route      类名  方法名  参数类型(多个用,分隔)  url  是否正则
+ */
+public class MyComponentIndex {
+
+    //索引文件的位置
+    public static final String LOCATION = "META-INF/my-spring.components";
+
+    static final String COMPONENT = "component";
+
+    static final String AUTOWIRED = "autowired";
+
+    static final String ROUTE = "route";
+
+    static final String CONTROLLER = "controller";
+
+    static final String SERVICE = "service";
+
+    static final String INTERCEPTOR = "interceptor";
+
+    static final String ADVICE = "advice";
+
+    static final char SEPARATOR = '\t';
+
+    //key为类名
+    private final Map<String, Component> components = new LinkedHashMap<>();
+
+    private MyComponentIndex() {
+    }
+
+    /**
+     * bean默认的key:类名首字母小写
+     * 扫描、组件索引和运行时注册的controller都使用这个规则,否则同一个类在不同的启动方式下key不一致
+     * @param simpleName 类名,不带包名
+     * @return
+     */
+    public static String beanName(String simpleName) {
+
+        char[] chars = simpleName.toCharArray();
+        chars[0] = Character.toLowerCase(chars[0]);
+        return String.valueOf(chars);
+    }
+
+    /**
+     * 读取classpath下所有的索引文件
+     * @param classLoader
+     * @return 没有索引文件时返回null
+     * @throws IOException
+     */
+    public static MyComponentIndex load(ClassLoader classLoader) throws IOException {
+
+        Enumeration<URL> urls = classLoader.getResources(LOCATION);
+        if(!urls.hasMoreElements()){
+            return null;
+        }
+
+        MyComponentIndex index = new MyComponentIndex();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if(line.isEmpty() || line.startsWith("#")){
+                        continue;
+                    }
+                    index.parse(line.split(String.valueOf(SEPARATOR), -1));
+                }
+            }
+        }
+        return index;
+    }
+
+    private void parse(String[] fields) throws IOException {
+
+        String type = fields[0];
+        if(COMPONENT.equals(type)){
+            Component component = component(fields[1]);
+            component.controller = CONTROLLER.equals(fields[2]);
+            component.keys = split(fields[3]);
+            component.lazy = fields.length > 4 && Boolean.parseBoolean(fields[4]);
+        }else if(AUTOWIRED.equals(type)){
+            component(fields[1]).injections.add(new Injection(fields[2], fields[3]));
+        }else if(ROUTE.equals(type)){
+            component(fields[1]).routes.add(new Route(fields[2], split(fields[3]), fields[4], Boolean.parseBoolean(fields[5])));
+        }else{
+            throw new IOException("无法解析的组件索引: " + type);
+        }
+    }
+
+    private Component component(String className) {
+
+        Component component = components.get(className);
+        if(null == component){
+            component = new Component(className);
+            components.put(className, component);
+        }
+        return component;
+    }
+
+    private static String[] split(String value) {
+
+        return value.isEmpty() ? new String[0] : value.split(",");
+    }
+
+    /**
+     * 获取扫描包下的所有组件
+     * @param scanPackage
+     * @return
+     */
+    public List<Component> getComponents(String scanPackage) {
+
+        String prefix = scanPackage + ".";
+        List<Component> result = new ArrayList<>();
+        for (Component component : components.values()) {
+            if(null != component.keys && component.className.startsWith(prefix)){
+                result.add(component);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取类的组件信息
+     * @param className
+     * @return 不在索引中时返回null
+     */
+    public Component getComponent(String className) {
+
+        return components.get(className);
+    }
+
+    /**
+     * 把索引中的类型名称转换为Class,支持基本类型和数组,比如int、java.lang.String[]
+     * @param typeName
+     * @param classLoader
+     * @return
+     * @throws ClassNotFoundException
+     */
+    public static Class<?> resolveType(String typeName, ClassLoader classLoader) throws ClassNotFoundException {
+
+        int dimensions = 0;
+        while (typeName.endsWith("[]")) {
+            typeName = typeName.substring(0, typeName.length() - 2);
+            dimensions++;
+        }
+
+        Class<?> type;
+        switch (typeName) {
+            case "boolean": type = boolean.class; break;
+            case "byte": type = byte.class; break;
+            case "char": type = char.class; break;
+            case "short": type = short.class; break;
+            case "int": type = int.class; break;
+            case "long": type = long.class; break;
+            case "float": type = float.class; break;
+            case "double": type = double.class; break;
+            default: type = Class.forName(typeName, false, classLoader);
+        }
+
+        for (int i = 0; i < dimensions; i++) {
+            type = Array.newInstance(type, 0).getClass();
+        }
+        return type;
+    }
+
+    /**
+     * 带MyController或MyService注解的类
+     */
+    public static class Component {
+
+        private final String className;
+
+        private boolean controller;
+
+        //bean在IOC容器中的key
+        private String[] keys;
+
+        //是否带有MyLazy注解
+        private boolean lazy;
+
+        //带MyAutowired注解的属性
+        private final List<Injection> injections = new ArrayList<>();
+
+        //带MyRequestMapping注解的方法
+        private final List<Route> routes = new ArrayList<>();
+
+        public Component(String className) {
+            this.className = className;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public boolean isController() {
+            return controller;
+        }
+
+        public String[] getKeys() {
+            return keys;
+        }
+
+        public boolean isLazy() {
+            return lazy;
+        }
+
+        public List<Injection> getInjections() {
+            return Collections.unmodifiableList(injections);
+        }
+
+        public List<Route> getRoutes() {
+            return Collections.unmodifiableList(routes);
+        }
+    }
+
+    /**
+     * 依赖注入点
+     */
+    public static class Injection {
+
+        private final String fieldName;
+
+        private final String key;
+
+        public Injection(String fieldName, String key) {
+            this.fieldName = fieldName;
+            this.key = key;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * url映射,url已经拼接了类上的MyRequestMapping
+     */
+    public static class Route {
+
+        private final String methodName;
+
+        private final String[] parameterTypes;
+
+        private final String path;
+
+        private final boolean regex;
+
+        public Route(String methodName, String[] parameterTypes, String path, boolean regex) {
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+            this.path = path;
+            this.regex = regex;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public String[] getParameterTypes() {
+            return parameterTypes;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isRegex() {
+            return regex;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.longye.spring.framework.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译时生成组件索引的注解处理器
+ * 记录所有带MyController、MyService、MyInterceptor、MyControllerAdvice注解的类,它们在IOC容器中的key、MyAutowired注入点和MyRequestMapping映射的url
+ * 这里只通过注解的名称读取注解,不依赖注解类本身,所以可以在编译框架其他代码之前单独编译
+ * 增量编译(比如IDE中)只会处理修改过的类,所以生成时会合并已有的索引,只替换本次编译的类的记录
+ */
+@SupportedAnnotationTypes({MyComponentIndexProcessor.CONTROLLER, MyComponentIndexProcessor.SERVICE,
+        MyComponentIndexProcessor.INTERCEPTOR, MyComponentIndexProcessor.ADVICE})
+public class MyComponentIndexProcessor extends AbstractProcessor {
+
+    static final String CONTROLLER = "com.longye.spring.framework.annotation.MyController";
+
+    static final String SERVICE = "com.longye.spring.framework.annotation.MyService";
+
+    static final String INTERCEPTOR = "com.longye.spring.framework.annotation.MyInterceptor";
+
+    static final String ADVICE = "com.longye.spring.framework.annotation.MyControllerAdvice";
+
+    private static final String LAZY = "com.longye.spring.framework.annotation.MyLazy";
+
+    private static final String AUTOWIRED = "com.longye.spring.framework.annotation.MyAutowired";
+
+    private static final String REQUEST_MAPPING = "com.longye.spring.framework.annotation.MyRequestMapping";
+
+    //key为类名,value为该类的索引记录,按类名排序保证每次生成的文件一致
+    private final Map<String, List<String>> records = new TreeMap<>();
+
+    //本次编译的所有类,已有索引中这些类的记录以本次的结果为准
+    private final Set<String> compiled = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+        for (Element element : roundEnv.getRootElements()) {
+            addCompiled(element);
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if(element.getKind() == ElementKind.CLASS){
+                    index((TypeElement) element);
+                }
+            }
+        }
+
+        if(roundEnv.processingOver()){
+            //已有索引中的记录被替换或者删除时也需要重新生成
+            if(mergeExisting() || !records.isEmpty()){
+                write();
+            }
+        }
+        return false;
+    }
+
+    private void addCompiled(Element element) {
+
+        if(element instanceof TypeElement){
+            compiled.add(binaryName((TypeElement) element));
+            for (Element enclosed : element.getEnclosedElements()) {
+                addCompiled(enclosed);
+            }
+        }
+    }
+
+    /**
+     * 把输出目录中已有的索引合并到records中
+     * 本次编译过的类以本次的结果为准,已经不存在的类直接丢弃
+     * @return 是否丢弃了已有索引中的记录
+     */
+    private boolean mergeExisting() {
+
+        Map<String, List<String>> existing = new TreeMap<>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", MyComponentIndex.LOCATION);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if(line.isEmpty() || line.startsWith("#")){
+                        continue;
+                    }
+                    String className = line.split(String.valueOf(MyComponentIndex.SEPARATOR), -1)[1];
+                    List<String> lines = existing.get(className);
+                    if(null == lines){
+                        lines = new ArrayList<>();
+                        existing.put(className, lines);
+                    }
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            //第一次编译,还没有索引
+            return false;
+        }
+
+        boolean dropped = false;
+        for (Map.Entry<String, List<String>> entry : existing.entrySet()) {
+            String className = entry.getKey();
+            if(compiled.contains(className)
+                    || null == processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'))){
+                dropped = true;
+                continue;
+            }
+            records.put(className, entry.getValue());
+        }
+        return dropped;
+    }
+
+    private void index(TypeElement type) {
+
+        String className = binaryName(type);
+        if(records.containsKey(className)){
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+
+        //和ApplicationContext.createBean的规则一致:controller、拦截器和异常处理类以类名为key,
+        //同时带有MyService注解的话再加上service的key,各个角色之间互不排斥
+        List<String> keys = new ArrayList<>();
+        String kind = null;
+        AnnotationMirror controller = findAnnotation(type, CONTROLLER);
+        if(null != controller){
+            kind = MyComponentIndex.CONTROLLER;
+        }else if(null != findAnnotation(type, INTERCEPTOR)){
+            kind = MyComponentIndex.INTERCEPTOR;
+        }else if(null != findAnnotation(type, ADVICE)){
+            kind = MyComponentIndex.ADVICE;
+        }
+        if(null != kind){
+            keys.add(beanName(type));
+        }
+
+        AnnotationMirror service = findAnnotation(type, SERVICE);
+        if(null != service){
+            if(null == kind){
+                kind = MyComponentIndex.SERVICE;
+            }
+            String value = stringValue(service, "value", "");
+            if(!value.equals("")){
+                keys.add(value);
+            }else{
+                for (TypeMirror i : type.getInterfaces()) {
+                    keys.add(typeName(i));
+                }
+            }
+        }
+        if(null == kind){
+            return;
+        }
+
+        boolean lazy = null != findAnnotation(type, LAZY);
+        lines.add(line(MyComponentIndex.COMPONENT, className, kind, join(keys), String.valueOf(lazy)));
+        if(null != controller){
+            indexRoutes(type, className, lines);
+        }
+
+        for (Element element : type.getEnclosedElements()) {
+            AnnotationMirror autowired = findAnnotation(element, AUTOWIRED);
+            if(element.getKind() == ElementKind.FIELD && null != autowired){
+                String key = stringValue(autowired, "value", "");
+                if(key.equals("")){
+                    key = typeName(element.asType());
+                }
+                lines.add(line(MyComponentIndex.AUTOWIRED, className, element.getSimpleName().toString(), key));
+            }
+        }
+
+        records.put(className, lines);
+    }
+
+    private static String beanName(TypeElement type) {
+        return MyComponentIndex.beanName(type.getSimpleName().toString());
+    }
+
+    private void indexRoutes(TypeElement type, String className, List<String> lines) {
+
+        String url = "";
+        boolean regex = false;
+        AnnotationMirror typeMapping = findAnnotation(type, REQUEST_MAPPING);
+        if(null != typeMapping){
+            url = stringValue(typeMapping, "value", "");
+            regex = Boolean.parseBoolean(stringValue(typeMapping, "regex", "false"));
+        }
+
+        for (Element element : type.getEnclosedElements()) {
+            AnnotationMirror mapping = findAnnotation(element, REQUEST_MAPPING);
+            if(element.getKind() != ElementKind.METHOD || null == mapping){
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) element;
+            List<String> parameterTypes = new ArrayList<>();
+            for (VariableElement parameter : method.getParameters()) {
+                parameterTypes.add(typeName(parameter.asType()));
+            }
+            boolean methodRegex = regex || Boolean.parseBoolean(stringValue(mapping, "regex", "false"));
+            lines.add(line(MyComponentIndex.ROUTE, className, method.getSimpleName().toString(), join(parameterTypes),
+                    url + stringValue(mapping, "value", ""), String.valueOf(methodRegex)));
+        }
+    }
+
+    private void write() {
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", MyComponentIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# MySpring组件索引,编译时自动生成,不要手动修改\n");
+                for (List<String> lines : records.values()) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "无法生成组件索引: " + e);
+        }
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if(annotationType.getQualifiedName().contentEquals(annotationName)){
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private String stringValue(AnnotationMirror mirror, String name, String defaultValue) {
+
+        if(null == mirror){
+            return defaultValue;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if(entry.getKey().getSimpleName().contentEquals(name)){
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 类型的名称,和Class.getName()一致,数组写成java.lang.String[]的形式
+     */
+    private String typeName(TypeMirror type) {
+
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if(erased.getKind() == TypeKind.ARRAY){
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        if(erased.getKind() == TypeKind.DECLARED){
+            return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+        }
+        return erased.toString();
+    }
+
+    private String binaryName(TypeElement type) {
+
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private static String line(String... fields) {
+
+        StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            if(sb.length() > 0){
+                sb.append(MyComponentIndex.SEPARATOR);
+            }
+            sb.append(field);
+        }
+        return sb.toString();
+    }
+
+    private static String join(List<String> values) {
+
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if(sb.length() > 0){
+                sb.append(',');
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
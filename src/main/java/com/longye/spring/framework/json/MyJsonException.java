@@ -0,0 +1,13 @@
+package com.longye.spring.framework.json;
+
+import java.io.IOException;
+
+/**
+ * JSON格式错误
+ */
+public class MyJsonException extends IOException {
+
+    public MyJsonException(String message) {
+        super(message);
+    }
+}
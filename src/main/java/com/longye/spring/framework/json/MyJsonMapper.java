@@ -0,0 +1,753 @@
+package com.longye.spring.framework.json;
+
+import com.longye.spring.framework.bind.MyConverter;
+import com.longye.spring.framework.bind.MyConverters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.BaseStream;
+
+/**
+ * JSON和Java对象之间的绑定
+ * 每个类型对应一个TypeReader,在初始化时根据类型生成,请求时不再判断类型
+ * 写JSON时每个类对应一个TypeWriter,第一次写该类的对象时生成
+ * 普通的类按属性名绑定,类的属性、构造方法等信息只解析一次并缓存。JSON中多余的属性直接跳过
+ */
+public class MyJsonMapper {
+
+    //类的属性信息,key为类
+    private static final Map<Class<?>, BeanInfo> BEANS = new ConcurrentHashMap<>();
+
+    //每个类的序列化方式,key为对象的实际类型
+    private static final Map<Class<?>, TypeWriter> WRITERS = new ConcurrentHashMap<>();
+
+    /**
+     * 把JSON中的一个值转换为Java对象
+     */
+    public interface TypeReader {
+
+        Object read(MyJsonReader reader) throws IOException;
+    }
+
+    /**
+     * 把一个Java对象写成JSON
+     */
+    public interface TypeWriter {
+
+        void write(MyJsonWriter writer, Object value) throws IOException;
+    }
+
+    /**
+     * 获取类型对应的TypeReader
+     * @param type 方法参数或者属性的类型,可以带泛型,比如List<Fruit>
+     * @return
+     * @throws IllegalStateException 不支持的类型
+     */
+    public static TypeReader reader(Type type) {
+
+        TypeReader reader = readerFor(type);
+        //嵌套的类也在这里解析,不支持的属性类型在初始化时就报错,而不是每次请求时都失败
+        resolve(reader, new HashSet<Class<?>>());
+        return reader;
+    }
+
+    /**
+     * 解析reader中用到的所有类的属性信息
+     * @param reader
+     * @param resolved 已经解析过的类,类的属性中引用自己时不会重复解析
+     */
+    private static void resolve(TypeReader reader, Set<Class<?>> resolved) {
+
+        if(reader instanceof BeanReader){
+            BeanReader beanReader = (BeanReader) reader;
+            if(resolved.add(beanReader.type)){
+                for (Property property : beanReader.info().properties.values()) {
+                    resolve(property.reader, resolved);
+                }
+            }
+        }else if(reader instanceof ArrayReader){
+            resolve(((ArrayReader) reader).componentReader, resolved);
+        }else if(reader instanceof CollectionReader){
+            resolve(((CollectionReader) reader).elementReader, resolved);
+        }else if(reader instanceof MapReader){
+            resolve(((MapReader) reader).valueReader, resolved);
+        }
+    }
+
+    /**
+     * 从流中读取一个值
+     * @param reader
+     * @param type
+     * @return
+     * @throws IOException
+     */
+    public static Object read(MyJsonReader reader, Type type) throws IOException {
+        return reader(type).read(reader);
+    }
+
+    /**
+     * 把对象写成JSON,按对象的实际类型查找序列化方式
+     * 集合、Iterator和Stream逐个元素写入,数据量大时也不会在内存中生成完整的JSON
+     * @param writer
+     * @param value
+     * @throws IOException
+     */
+    public static void write(MyJsonWriter writer, Object value) throws IOException {
+
+        if(null == value){
+            writer.nullValue();
+            return;
+        }
+        writer(value.getClass()).write(writer, value);
+    }
+
+    /**
+     * 获取类型对应的TypeWriter,每个类只生成一次
+     * @param type 对象的实际类型
+     * @return
+     */
+    public static TypeWriter writer(Class<?> type) {
+
+        TypeWriter writer = WRITERS.get(type);
+        if(null == writer){
+            writer = createWriter(type);
+            WRITERS.put(type, writer);
+        }
+        return writer;
+    }
+
+    private static TypeWriter createWriter(Class<?> type) {
+
+        if(CharSequence.class.isAssignableFrom(type) || type == Character.class){
+            return STRING_WRITER;
+        }
+        if(type.isEnum() || (null != type.getSuperclass() && type.getSuperclass().isEnum())){
+            return ENUM_WRITER;
+        }
+        if(Number.class.isAssignableFrom(type)){
+            return NUMBER_WRITER;
+        }
+        if(type == Boolean.class){
+            return BOOLEAN_WRITER;
+        }
+        if(Map.class.isAssignableFrom(type)){
+            return MAP_WRITER;
+        }
+        if(Iterable.class.isAssignableFrom(type)){
+            return ITERABLE_WRITER;
+        }
+        if(Iterator.class.isAssignableFrom(type)){
+            return ITERATOR_WRITER;
+        }
+        if(BaseStream.class.isAssignableFrom(type)){
+            return STREAM_WRITER;
+        }
+        if(type.isArray()){
+            return ARRAY_WRITER;
+        }
+        if(Date.class.isAssignableFrom(type)){
+            return DATE_WRITER;
+        }
+        if(type == Optional.class){
+            return OPTIONAL_WRITER;
+        }
+        //LocalDate、UUID、URI等JDK中的值类型写成toString()的字符串,JDK 9以后不能通过反射读取java.*类的私有属性
+        if(isJdkType(type)){
+            return STRING_WRITER;
+        }
+        return new BeanWriter(type);
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+        return type.getName().startsWith("java.");
+    }
+
+    private static final TypeWriter STRING_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.value(value.toString());
+        }
+    };
+
+    private static final TypeWriter ENUM_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.value(((Enum<?>) value).name());
+        }
+    };
+
+    private static final TypeWriter NUMBER_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.value((Number) value);
+        }
+    };
+
+    private static final TypeWriter BOOLEAN_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.value(((Boolean) value).booleanValue());
+        }
+    };
+
+    //Date写成毫秒数
+    private static final TypeWriter DATE_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.value(((Date) value).getTime());
+        }
+    };
+
+    private static final TypeWriter OPTIONAL_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            MyJsonMapper.write(writer, ((Optional<?>) value).orElse(null));
+        }
+    };
+
+    //Map的key使用toString()
+    private static final TypeWriter MAP_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writer.name(String.valueOf(entry.getKey()));
+                MyJsonMapper.write(writer, entry.getValue());
+            }
+            writer.endObject();
+        }
+    };
+
+    private static final TypeWriter ITERABLE_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writeElements(writer, ((Iterable<?>) value).iterator());
+        }
+    };
+
+    private static final TypeWriter ITERATOR_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writeElements(writer, (Iterator<?>) value);
+        }
+    };
+
+    //写完后关闭Stream,比如数据库游标
+    private static final TypeWriter STREAM_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            try (BaseStream<?, ?> stream = (BaseStream<?, ?>) value) {
+                writeElements(writer, stream.iterator());
+            }
+        }
+    };
+
+    private static final TypeWriter ARRAY_WRITER = new TypeWriter() {
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+            writer.beginArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                MyJsonMapper.write(writer, Array.get(value, i));
+            }
+            writer.endArray();
+        }
+    };
+
+    private static void writeElements(MyJsonWriter writer, Iterator<?> iterator) throws IOException {
+
+        writer.beginArray();
+        while (iterator.hasNext()) {
+            write(writer, iterator.next());
+        }
+        writer.endArray();
+    }
+
+    private static TypeReader readerFor(Type type) {
+
+        if(type instanceof WildcardType){
+            return readerFor(((WildcardType) type).getUpperBounds()[0]);
+        }
+        if(type instanceof GenericArrayType){
+            Type componentType = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayReader(rawType(componentType), readerFor(componentType));
+        }
+
+        Class<?> raw = rawType(type);
+        if(raw == Object.class){
+            return NATURAL;
+        }
+        if(raw.isArray()){
+            return new ArrayReader(raw.getComponentType(), readerFor(raw.getComponentType()));
+        }
+        if(Collection.class.isAssignableFrom(raw) || raw == Iterable.class){
+            return new CollectionReader(raw, readerFor(typeArgument(type, 0)));
+        }
+        if(Map.class.isAssignableFrom(raw)){
+            Class<?> keyType = rawType(typeArgument(type, 0));
+            MyConverter keyConverter = MyConverters.get(keyType);
+            if(null == keyConverter){
+                throw new IllegalStateException("不支持的Map key类型: " + type);
+            }
+            return new MapReader(raw, keyType, keyConverter, readerFor(typeArgument(type, 1)));
+        }
+
+        MyConverter converter = MyConverters.get(raw);
+        if(null != converter){
+            return new ScalarReader(raw, converter);
+        }
+        if(raw.isInterface() || Modifier.isAbstract(raw.getModifiers()) || raw.isPrimitive()){
+            throw new IllegalStateException("不支持的JSON绑定类型: " + type);
+        }
+        return new BeanReader(raw);
+    }
+
+    static Class<?> rawType(Type type) {
+
+        if(type instanceof Class){
+            return (Class<?>) type;
+        }
+        if(type instanceof ParameterizedType){
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if(type instanceof GenericArrayType){
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        if(type instanceof WildcardType){
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        //类型变量等无法确定的类型
+        return Object.class;
+    }
+
+    static Type typeArgument(Type type, int index) {
+
+        if(type instanceof ParameterizedType){
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if(index < arguments.length){
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * 不知道具体类型时,对象转换为LinkedHashMap,数组转换为ArrayList,整数转换为Long,小数转换为Double
+     */
+    private static final TypeReader NATURAL = new TypeReader() {
+        @Override
+        public Object read(MyJsonReader reader) throws IOException {
+
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        map.put(reader.nextName(), read(reader));
+                    }
+                    reader.endObject();
+                    return map;
+                case BEGIN_ARRAY:
+                    List<Object> list = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        list.add(read(reader));
+                    }
+                    reader.endArray();
+                    return list;
+                case BOOLEAN:
+                    return reader.nextBoolean();
+                case NULL:
+                    reader.nextNull();
+                    return null;
+                case NUMBER:
+                    return parseNumber(reader.nextNumber());
+                default:
+                    return reader.nextString();
+            }
+        }
+    };
+
+    private static Object parseNumber(String value) throws MyJsonException {
+
+        try {
+            if(value.indexOf('.') >= 0 || value.indexOf('e') >= 0 || value.indexOf('E') >= 0){
+                return Double.valueOf(value);
+            }
+            if(value.length() < 19){
+                return Long.valueOf(value);
+            }
+            BigInteger integer = new BigInteger(value);
+            return integer.bitLength() < 64 ? (Object) integer.longValue() : integer;
+        } catch (NumberFormatException e) {
+            throw new MyJsonException("无效的数字" + value);
+        }
+    }
+
+    /**
+     * 字符串、数字、布尔值和枚举,使用和请求参数相同的类型转换器
+     */
+    private static class ScalarReader implements TypeReader {
+
+        private final Class<?> type;
+
+        private final MyConverter converter;
+
+        public ScalarReader(Class<?> type, MyConverter converter) {
+            this.type = type;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object read(MyJsonReader reader) throws IOException {
+
+            if(reader.peek() == MyJsonReader.Token.NULL){
+                reader.nextNull();
+                return null;
+            }
+            if(reader.peek() != MyJsonReader.Token.STRING && reader.peek() != MyJsonReader.Token.NUMBER
+                    && reader.peek() != MyJsonReader.Token.BOOLEAN){
+                throw new MyJsonException("期望的是" + type.getSimpleName() + ",实际是" + reader.peek());
+            }
+            String value = reader.nextString();
+            try {
+                return converter.convert(value);
+            } catch (Exception e) {
+                throw new MyJsonException("值[" + value + "]无法转换为" + type.getSimpleName());
+            }
+        }
+    }
+
+    private static class ArrayReader implements TypeReader {
+
+        private final Class<?> componentType;
+
+        private final TypeReader componentReader;
+
+        public ArrayReader(Class<?> componentType, TypeReader componentReader) {
+            this.componentType = componentType;
+            this.componentReader = componentReader;
+        }
+
+        @Override
+        public Object read(MyJsonReader reader) throws IOException {
+
+            if(reader.peek() == MyJsonReader.Token.NULL){
+                reader.nextNull();
+                return null;
+            }
+            List<Object> values = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                values.add(componentReader.read(reader));
+            }
+            reader.endArray();
+
+            Object array = Array.newInstance(componentType, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Object value = values.get(i);
+                //基本类型的数组元素不能为null
+                if(null != value || !componentType.isPrimitive()){
+                    Array.set(array, i, value);
+                }
+            }
+            return array;
+        }
+    }
+
+    private static class CollectionReader implements TypeReader {
+
+        private final Constructor<?> constructor;
+
+        private final boolean set;
+
+        private final TypeReader elementReader;
+
+        public CollectionReader(Class<?> type, TypeReader elementReader) {
+            this.elementReader = elementReader;
+            this.set = Set.class.isAssignableFrom(type);
+            this.constructor = type.isInterface() || Modifier.isAbstract(type.getModifiers()) ? null : constructor(type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object read(MyJsonReader reader) throws IOException {
+
+            if(reader.peek() == MyJsonReader.Token.NULL){
+                reader.nextNull();
+                return null;
+            }
+            Collection<Object> collection = null != constructor ? (Collection<Object>) newInstance(constructor)
+                    : set ? new LinkedHashSet<>() : new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                collection.add(elementReader.read(reader));
+            }
+            reader.endArray();
+            return collection;
+        }
+    }
+
+    private static class MapReader implements TypeReader {
+
+        private final Constructor<?> constructor;
+
+        private final Class<?> keyType;
+
+        private final MyConverter keyConverter;
+
+        private final TypeReader valueReader;
+
+        public MapReader(Class<?> type, Class<?> keyType, MyConverter keyConverter, TypeReader valueReader) {
+            this.keyType = keyType;
+            this.keyConverter = keyConverter;
+            this.valueReader = valueReader;
+            this.constructor = type.isInterface() || Modifier.isAbstract(type.getModifiers()) ? null : constructor(type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object read(MyJsonReader reader) throws IOException {
+
+            if(reader.peek() == MyJsonReader.Token.NULL){
+                reader.nextNull();
+                return null;
+            }
+            Map<Object, Object> map = null != constructor ? (Map<Object, Object>) newInstance(constructor) : new LinkedHashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                Object key;
+                try {
+                    key = keyConverter.convert(name);
+                } catch (Exception e) {
+                    throw new MyJsonException("属性名[" + name + "]无法转换为" + keyType.getSimpleName());
+                }
+                map.put(key, valueReader.read(reader));
+            }
+            reader.endObject();
+            return map;
+        }
+    }
+
+    /**
+     * 普通的类,按属性名绑定
+     */
+    private static class BeanReader implements TypeReader {
+
+        private final Class<?> type;
+
+        //生成reader时不解析,这样类的属性中可以引用自己,由resolve统一解析
+        private volatile BeanInfo info;
+
+        public BeanReader(Class<?> type) {
+            this.type = type;
+        }
+
+        BeanInfo info() {
+
+            BeanInfo i = info;
+            if(null == i){
+                i = BEANS.get(type);
+                if(null == i){
+                    i = new BeanInfo(type);
+                    BEANS.put(type, i);
+                }
+                info = i;
+            }
+            return i;
+        }
+
+        @Override
+        public Object read(MyJsonReader reader) throws IOException {
+
+            if(reader.peek() == MyJsonReader.Token.NULL){
+                reader.nextNull();
+                return null;
+            }
+
+            BeanInfo info = info();
+            Object bean = newInstance(info.constructor);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                Property property = info.properties.get(reader.nextName());
+                if(null == property){
+                    reader.skipValue();
+                    continue;
+                }
+                Object value = property.reader.read(reader);
+                //JSON中的null不覆盖基本类型的默认值
+                if(null == value && property.field.getType().isPrimitive()){
+                    continue;
+                }
+                try {
+                    property.field.set(bean, value);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            reader.endObject();
+            return bean;
+        }
+    }
+
+    /**
+     * 普通的类,按属性的声明顺序写入
+     * 属性名在生成时就编码成了"name":的字节,基本类型的属性直接读取,不装箱
+     */
+    private static class BeanWriter implements TypeWriter {
+
+        private final Field[] fields;
+
+        private final byte[][] encodedNames;
+
+        public BeanWriter(Class<?> type) {
+
+            List<Field> list = fields(type);
+            this.fields = list.toArray(new Field[list.size()]);
+            this.encodedNames = new byte[fields.length][];
+            for (int i = 0; i < fields.length; i++) {
+                encodedNames[i] = encodeName(fields[i].getName());
+            }
+        }
+
+        @Override
+        public void write(MyJsonWriter writer, Object value) throws IOException {
+
+            writer.beginObject();
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    Field field = fields[i];
+                    writer.encodedName(encodedNames[i]);
+                    Class<?> type = field.getType();
+                    if(type == int.class || type == long.class || type == short.class || type == byte.class){
+                        writer.value(field.getLong(value));
+                    }else if(type == double.class){
+                        writer.value(field.getDouble(value));
+                    }else if(type == float.class){
+                        writer.value(field.getFloat(value));
+                    }else if(type == boolean.class){
+                        writer.value(field.getBoolean(value));
+                    }else{
+                        MyJsonMapper.write(writer, field.get(value));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            writer.endObject();
+        }
+
+        private static byte[] encodeName(String name) {
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            //BeanWriter可能在写入其他对象的过程中才生成,不能使用线程共享的缓冲区
+            try (MyJsonWriter writer = new MyJsonWriter(out, new byte[name.length() * 6 + 4])) {
+                writer.beginObject().name(name);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            //去掉开头的{
+            byte[] bytes = out.toByteArray();
+            return Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+    }
+
+    /**
+     * 类的构造方法和属性
+     */
+    static class BeanInfo {
+
+        final Constructor<?> constructor;
+
+        //key为属性名
+        final Map<String, Property> properties = new HashMap<>();
+
+        BeanInfo(Class<?> type) {
+
+            this.constructor = constructor(type);
+            for (Field field : fields(type)) {
+                properties.put(field.getName(), new Property(field, readerFor(field.getGenericType())));
+            }
+        }
+    }
+
+    /**
+     * 类中需要和JSON绑定的属性,不包括静态和transient的属性,父类的在前
+     * 继承自JDK类时只取到第一个java.*父类为止,JDK类的私有属性不能反射访问
+     */
+    private static List<Field> fields(Class<?> type) {
+
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; null != c && !isJdkType(c); c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()){
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    static class Property {
+
+        final Field field;
+
+        final TypeReader reader;
+
+        Property(Field field, TypeReader reader) {
+            this.field = field;
+            this.reader = reader;
+        }
+    }
+
+    private static Constructor<?> constructor(Class<?> type) {
+
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(type.getName() + "没有无参的构造方法,无法绑定JSON");
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor) {
+
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("无法实例化" + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+}
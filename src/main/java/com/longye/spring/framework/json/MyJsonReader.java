@@ -0,0 +1,425 @@
+package com.longye.spring.framework.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 流式的JSON读取器
+ * 按需从输入流中读取,一次只解析一个token,不会把整个请求体读成字符串,也不会生成中间的树结构
+ * 使用方式和Gson的JsonReader类似: peek()查看下一个token的类型,再调用对应的beginObject()、nextName()、nextString()等方法
+ */
+public class MyJsonReader implements Closeable {
+
+    /**
+     * token的类型
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    //允许的最大嵌套层数,防止恶意的请求导致栈溢出
+    private static final int MAX_DEPTH = 256;
+
+    //当前所在的位置,决定下一个字符应该是什么
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+
+    private final char[] buffer = new char[4096];
+
+    private int pos;
+
+    private int limit;
+
+    private int[] stack = new int[32];
+
+    private int depth;
+
+    private Token peeked;
+
+    //读取字符串时复用
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * @param in 按UTF-8解码
+     */
+    public MyJsonReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public MyJsonReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * 查看下一个token的类型,不会消费该token
+     * @return
+     * @throws IOException
+     */
+    public Token peek() throws IOException {
+
+        if(null != peeked){
+            return peeked;
+        }
+
+        int context = stack[depth - 1];
+        if(context == EMPTY_ARRAY){
+            stack[depth - 1] = NONEMPTY_ARRAY;
+            int c = nextNonWhitespace();
+            if(c == ']'){
+                return peeked = Token.END_ARRAY;
+            }
+            pos--;
+        }else if(context == NONEMPTY_ARRAY){
+            int c = nextNonWhitespace();
+            if(c == ']'){
+                return peeked = Token.END_ARRAY;
+            }
+            if(c != ','){
+                throw syntaxError("数组中缺少,或者]");
+            }
+        }else if(context == EMPTY_OBJECT || context == NONEMPTY_OBJECT){
+            stack[depth - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace();
+            if(c == '}' && context == EMPTY_OBJECT){
+                return peeked = Token.END_OBJECT;
+            }
+            if(context == NONEMPTY_OBJECT){
+                if(c == '}'){
+                    return peeked = Token.END_OBJECT;
+                }
+                if(c != ','){
+                    throw syntaxError("对象中缺少,或者}");
+                }
+                c = nextNonWhitespace();
+            }
+            if(c != '"'){
+                throw syntaxError("对象的属性名必须是字符串");
+            }
+            return peeked = Token.NAME;
+        }else if(context == DANGLING_NAME){
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if(nextNonWhitespace() != ':'){
+                throw syntaxError("属性名后缺少:");
+            }
+        }else if(context == EMPTY_DOCUMENT){
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        }else if(context == NONEMPTY_DOCUMENT){
+            if(nextNonWhitespace() != -1){
+                throw syntaxError("JSON结束后还有多余的内容");
+            }
+            return peeked = Token.END_DOCUMENT;
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                return peeked = Token.STRING;
+            case 't':
+            case 'f':
+                pos--;
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                pos--;
+                return peeked = Token.NULL;
+            case -1:
+                throw syntaxError("JSON不完整");
+            default:
+                if(c == '-' || (c >= '0' && c <= '9')){
+                    pos--;
+                    return peeked = Token.NUMBER;
+                }
+                throw syntaxError("无法识别的字符" + (char) c);
+        }
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * 当前的对象或数组中是否还有元素
+     * @return
+     * @throws IOException
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * 读取字符串,数字和布尔值也按字符串返回
+     * @return
+     * @throws IOException
+     */
+    public String nextString() throws IOException {
+
+        Token token = peek();
+        if(token == Token.STRING){
+            peeked = null;
+            return readString();
+        }
+        if(token == Token.NUMBER || token == Token.BOOLEAN){
+            peeked = null;
+            return readLiteral();
+        }
+        throw syntaxError("期望的是字符串,实际是" + token);
+    }
+
+    public boolean nextBoolean() throws IOException {
+
+        expect(Token.BOOLEAN);
+        String literal = readLiteral();
+        if("true".equals(literal)){
+            return true;
+        }
+        if("false".equals(literal)){
+            return false;
+        }
+        throw syntaxError("无法识别的值" + literal);
+    }
+
+    public void nextNull() throws IOException {
+
+        expect(Token.NULL);
+        String literal = readLiteral();
+        if(!"null".equals(literal)){
+            throw syntaxError("无法识别的值" + literal);
+        }
+    }
+
+    /**
+     * 读取数字的原始文本,由调用方决定转换成什么类型
+     * @return
+     * @throws IOException
+     */
+    public String nextNumber() throws IOException {
+        expect(Token.NUMBER);
+        return readLiteral();
+    }
+
+    /**
+     * 跳过下一个值,包括嵌套的对象和数组
+     * @throws IOException
+     */
+    public void skipValue() throws IOException {
+
+        int count = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    count++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    count++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    count--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    count--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case STRING:
+                    nextString();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("JSON不完整");
+                default:
+                    peeked = null;
+                    readLiteral();
+            }
+        } while (count > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void expect(Token token) throws IOException {
+
+        Token actual = peek();
+        if(actual != token){
+            throw syntaxError("期望的是" + token + ",实际是" + actual);
+        }
+        peeked = null;
+    }
+
+    private void push(int context) throws MyJsonException {
+
+        if(depth == MAX_DEPTH){
+            throw syntaxError("JSON嵌套层数超过" + MAX_DEPTH);
+        }
+        if(depth == stack.length){
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = context;
+    }
+
+    /**
+     * 读取字符串的剩余部分,开头的"已经被peek()消费
+     */
+    private String readString() throws IOException {
+
+        sb.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if(c == '"'){
+                    sb.append(buffer, start, pos - 1 - start);
+                    return sb.toString();
+                }
+                if(c == '\\'){
+                    sb.append(buffer, start, pos - 1 - start);
+                    sb.append(readEscape());
+                    start = pos;
+                }else if(c < 0x20){
+                    throw syntaxError("字符串中不能有控制字符");
+                }
+            }
+            sb.append(buffer, start, pos - start);
+            if(!fill()){
+                throw syntaxError("字符串没有结束");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+
+        int c = read();
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if(digit < 0){
+                        throw syntaxError("无效的\\u转义");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("无效的转义字符");
+        }
+    }
+
+    /**
+     * 读取数字、true、false、null这些不带引号的值
+     */
+    private String readLiteral() throws IOException {
+
+        sb.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if(c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\n' || c == '\r'){
+                    sb.append(buffer, start, pos - start);
+                    return sb.toString();
+                }
+                pos++;
+            }
+            sb.append(buffer, start, pos - start);
+            if(!fill()){
+                return sb.toString();
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+
+        while (true) {
+            if(pos == limit && !fill()){
+                return -1;
+            }
+            char c = buffer[pos++];
+            if(c != ' ' && c != '\t' && c != '\n' && c != '\r'){
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+
+        if(pos == limit && !fill()){
+            throw syntaxError("JSON不完整");
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * 缓冲区中的数据都已经处理完时,从输入流中读取下一段
+     */
+    private boolean fill() throws IOException {
+
+        int n = in.read(buffer, 0, buffer.length);
+        if(n <= 0){
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private MyJsonException syntaxError(String message) {
+        return new MyJsonException(message + ",位置在第" + depth + "层");
+    }
+}
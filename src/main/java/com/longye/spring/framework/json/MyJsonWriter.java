@@ -0,0 +1,383 @@
+package com.longye.spring.framework.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 流式的JSON写入器
+ * 直接按UTF-8编码写入字节缓冲区,缓冲区满了就写入输出流,不会先拼接成字符串
+ * 缓冲区按线程复用,同一个线程中同时只能使用一个MyJsonWriter
+ */
+public class MyJsonWriter implements Flushable, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    //允许的最大嵌套层数,对象之间循环引用时抛出异常而不是栈溢出
+    private static final int MAX_DEPTH = 256;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private static final byte[] NULL = "null".getBytes();
+
+    private static final byte[] TRUE = "true".getBytes();
+
+    private static final byte[] FALSE = "false".getBytes();
+
+    //当前所在的位置,决定写入值之前是否需要先写入逗号
+    private static final int EMPTY = 0;
+    private static final int NONEMPTY = 1;
+    private static final int DANGLING_NAME = 2;
+
+    private final OutputStream out;
+
+    private final byte[] buffer;
+
+    private int count;
+
+    private int[] stack = new int[32];
+
+    private int depth;
+
+    public MyJsonWriter(OutputStream out) {
+        this(out, BUFFERS.get());
+    }
+
+    /**
+     * 使用单独的缓冲区,可以在另一个MyJsonWriter写入的过程中使用
+     */
+    MyJsonWriter(OutputStream out, byte[] buffer) {
+        this.out = out;
+        this.buffer = buffer;
+        stack[depth++] = EMPTY;
+    }
+
+    public MyJsonWriter beginObject() throws IOException {
+        beforeValue();
+        push();
+        writeByte('{');
+        return this;
+    }
+
+    public MyJsonWriter endObject() throws IOException {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    public MyJsonWriter beginArray() throws IOException {
+        beforeValue();
+        push();
+        writeByte('[');
+        return this;
+    }
+
+    public MyJsonWriter endArray() throws IOException {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * 写入属性名
+     * @param name
+     * @return
+     * @throws IOException
+     */
+    public MyJsonWriter name(String name) throws IOException {
+        beforeName();
+        writeString(name);
+        writeByte(':');
+        return this;
+    }
+
+    /**
+     * 写入已经编码好的属性名,包括引号和冒号,比如"name":
+     * 由MyJsonMapper为每个类的属性预先生成
+     * @param encodedName
+     * @return
+     * @throws IOException
+     */
+    public MyJsonWriter encodedName(byte[] encodedName) throws IOException {
+        beforeName();
+        writeBytes(encodedName, 0, encodedName.length);
+        return this;
+    }
+
+    public MyJsonWriter value(String value) throws IOException {
+        if(null == value){
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public MyJsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * NaN和无穷大在JSON中无法表示,写入null
+     */
+    public MyJsonWriter value(double value) throws IOException {
+        if(Double.isNaN(value) || Double.isInfinite(value)){
+            return nullValue();
+        }
+        beforeValue();
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * float单独写入,转成double后0.1f会变成0.10000000149011612
+     */
+    public MyJsonWriter value(float value) throws IOException {
+        if(Float.isNaN(value) || Float.isInfinite(value)){
+            return nullValue();
+        }
+        beforeValue();
+        writeAscii(Float.toString(value));
+        return this;
+    }
+
+    public MyJsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        byte[] literal = value ? TRUE : FALSE;
+        writeBytes(literal, 0, literal.length);
+        return this;
+    }
+
+    /**
+     * 写入数字,比如BigDecimal,直接使用toString()
+     */
+    public MyJsonWriter value(Number value) throws IOException {
+        if(null == value){
+            return nullValue();
+        }
+        if(value instanceof Double){
+            return value(value.doubleValue());
+        }
+        if(value instanceof Float){
+            return value(value.floatValue());
+        }
+        if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte){
+            return value(value.longValue());
+        }
+        beforeValue();
+        writeAscii(value.toString());
+        return this;
+    }
+
+    /**
+     * 写入已经序列化好的JSON值,不做任何检查
+     * @param json 完整的一个JSON值,UTF-8编码
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    public MyJsonWriter rawValue(byte[] json, int offset, int length) throws IOException {
+        beforeValue();
+        writeBytes(json, offset, length);
+        return this;
+    }
+
+    public MyJsonWriter nullValue() throws IOException {
+        beforeValue();
+        writeBytes(NULL, 0, NULL.length);
+        return this;
+    }
+
+    /**
+     * 把缓冲区中的内容写入输出流
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        if(count > 0){
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        out.flush();
+    }
+
+    /**
+     * 写入缓冲区中剩余的内容,不会关闭输出流
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if(count > 0){
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void push() {
+        if(depth == MAX_DEPTH){
+            throw new IllegalStateException("JSON嵌套层数超过" + MAX_DEPTH + ",可能存在循环引用");
+        }
+        if(depth == stack.length){
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = EMPTY;
+    }
+
+    private void beforeName() throws IOException {
+        if(stack[depth - 1] == NONEMPTY){
+            writeByte(',');
+        }
+        stack[depth - 1] = DANGLING_NAME;
+    }
+
+    private void beforeValue() throws IOException {
+        int context = stack[depth - 1];
+        if(context == DANGLING_NAME){
+            //对象中属性的值,逗号在写属性名时已经写过了
+            stack[depth - 1] = NONEMPTY;
+            return;
+        }
+        if(context == NONEMPTY){
+            writeByte(',');
+        }
+        stack[depth - 1] = NONEMPTY;
+    }
+
+    /**
+     * 写入带引号的字符串,按UTF-8编码并转义
+     */
+    private void writeString(String value) throws IOException {
+
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if(count + 12 > buffer.length){
+                flushBuffer();
+            }
+            char c = value.charAt(i);
+            if(c < 0x80){
+                if(c == '"' || c == '\\'){
+                    buffer[count++] = '\\';
+                    buffer[count++] = (byte) c;
+                }else if(c < 0x20){
+                    writeEscape(c);
+                }else{
+                    buffer[count++] = (byte) c;
+                }
+            }else if(c < 0x800){
+                buffer[count++] = (byte) (0xc0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            }else if(c == '\u2028' || c == '\u2029'){
+                //U+2028和U+2029在JavaScript中是换行符
+                writeEscape(c);
+            }else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))){
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+            }else if(Character.isSurrogate(c)){
+                //不成对的代理字符无法编码
+                buffer[count++] = '?';
+            }else{
+                buffer[count++] = (byte) (0xe0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) {
+
+        buffer[count++] = '\\';
+        switch (c) {
+            case '\n': buffer[count++] = 'n'; return;
+            case '\r': buffer[count++] = 'r'; return;
+            case '\t': buffer[count++] = 't'; return;
+            case '\b': buffer[count++] = 'b'; return;
+            case '\f': buffer[count++] = 'f'; return;
+            default:
+                buffer[count++] = 'u';
+                buffer[count++] = HEX[(c >> 12) & 0xf];
+                buffer[count++] = HEX[(c >> 8) & 0xf];
+                buffer[count++] = HEX[(c >> 4) & 0xf];
+                buffer[count++] = HEX[c & 0xf];
+        }
+    }
+
+    /**
+     * 直接写入整数的每一位,不生成字符串
+     */
+    private void writeLong(long value) throws IOException {
+
+        if(value == Long.MIN_VALUE){
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if(count + 20 > buffer.length){
+            flushBuffer();
+        }
+        if(value < 0){
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            buffer[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        //倒序写入的,翻转一下
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    private void writeAscii(String value) throws IOException {
+
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+
+        if(count == buffer.length){
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+
+        if(length > buffer.length - count){
+            flushBuffer();
+            if(length > buffer.length){
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    private void flushBuffer() throws IOException {
+
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+}
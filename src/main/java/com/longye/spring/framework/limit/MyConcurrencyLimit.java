@@ -0,0 +1,135 @@
+package com.longye.spring.framework.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并发数限制,同时处理的请求数达到上限时直接拒绝,不让请求在容器中排队
+ * 许可通过CAS获取,不使用锁
+ * 开启自适应时使用AIMD调整上限: 耗时正常且并发数接近上限时上限加1,耗时超过无负载耗时的2倍时上限乘以0.9
+ */
+public class MyConcurrencyLimit {
+
+    //自适应时的最小上限,保证始终有请求能通过,用来探测后端是否恢复
+    private static final int MIN_LIMIT = 1;
+
+    //耗时超过无负载耗时的该倍数时认为后端已经过载
+    private static final double TOLERANCE = 2.0;
+
+    private static final double BACKOFF = 0.9;
+
+    //两次降低上限的最小间隔,避免同一批慢请求连续降低上限
+    private static final long DECREASE_INTERVAL = 100_000_000L;
+
+    //无负载耗时每隔这么久重新统计一次,后端性能变化后能跟着调整
+    private static final long BASELINE_WINDOW = 10_000_000_000L;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    //当前的上限,自适应时会变化
+    private volatile int limit;
+
+    //自适应时上限不会超过初始的上限
+    private final int maxLimit;
+
+    private final boolean adaptive;
+
+    //观察到的最小耗时,作为无负载时的耗时
+    private volatile long baseline = Long.MAX_VALUE;
+
+    //下一个统计窗口中的最小耗时
+    private volatile long windowMin = Long.MAX_VALUE;
+
+    private volatile long windowStart = System.nanoTime();
+
+    private volatile long lastDecrease;
+
+    /**
+     * @param limit 最大并发数
+     * @param adaptive 是否根据耗时自动调整上限
+     */
+    public MyConcurrencyLimit(int limit, boolean adaptive) {
+        this.limit = limit;
+        this.maxLimit = limit;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * 尝试获取一个许可
+     * @return 已经达到上限时返回false
+     */
+    public boolean tryAcquire() {
+
+        while (true) {
+            int current = inFlight.get();
+            if(current >= limit){
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还许可
+     * @param startNanos 请求开始的时间,自适应时用来计算耗时
+     */
+    public void release(long startNanos) {
+
+        int current = inFlight.getAndDecrement();
+        if(adaptive){
+            adjust(System.nanoTime() - startNanos, current);
+        }
+    }
+
+    /**
+     * 归还没有真正使用的许可,比如同时需要多个许可时后面的获取失败了,不计入耗时统计
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 根据这次请求的耗时调整上限,并发修改时少调整一次没有关系
+     * @param latency 请求的耗时
+     * @param inFlight 这次请求结束前的并发数
+     */
+    private void adjust(long latency, int inFlight) {
+
+        long now = System.nanoTime();
+        if(latency < windowMin){
+            windowMin = latency;
+        }
+        if(latency < baseline){
+            baseline = latency;
+        }else if(now - windowStart > BASELINE_WINDOW){
+            //用上一个窗口的最小耗时替换,后端变慢后不会一直认为过载
+            baseline = windowMin;
+            windowMin = Long.MAX_VALUE;
+            windowStart = now;
+        }
+
+        int current = limit;
+        if(latency > baseline * TOLERANCE){
+            if(now - lastDecrease > DECREASE_INTERVAL){
+                lastDecrease = now;
+                limit = Math.max(MIN_LIMIT, (int) (current * BACKOFF));
+            }
+        }else if(inFlight * 2 >= current && current < maxLimit){
+            //并发数没有用到上限的一半时,提高上限也没有意义
+            limit = current + 1;
+        }
+    }
+}
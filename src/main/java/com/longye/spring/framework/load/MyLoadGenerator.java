@@ -0,0 +1,406 @@
+package com.longye.spring.framework.load;
+
+import com.longye.spring.framework.metrics.MyHistogram;
+import com.longye.spring.framework.servlet.MyDispatcherServlet;
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+import com.longye.spring.framework.servlet.memory.MyInMemoryServletConfig;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的压测工具,不需要部署到tomcat就可以测量MyDispatcherServlet整个请求处理流程在并发下的表现
+ * 请求和响应都是内存中的MyInMemoryRequest和MyInMemoryResponse,按配置的权重随机选择请求
+ * closed模式: 每个worker收到响应后立即发下一个请求,测的是最大吞吐量
+ * open模式: 按固定的速率发请求,耗时从计划发送的时间算起,后端变慢时排队的时间也计入耗时
+ * 输出每个请求的吞吐量、耗时分位数和每次请求分配的内存,分配的内存通过ThreadMXBean按线程统计
+ * 运行: mvn -P load compile exec:exec -Dload.args="load.properties"
+ */
+public class MyLoadGenerator {
+
+    private static final String REQUEST_PREFIX = "request.";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MyDispatcherServlet servlet;
+
+    private final List<Target> targets;
+
+    //按权重累加的上界,随机数落在哪个区间就选哪个请求
+    private final int[] cumulativeWeights;
+
+    private final int workers;
+
+    private final boolean open;
+
+    //open模式下所有worker合计的每秒请求数
+    private final int rate;
+
+    //支持按线程统计分配的内存时不为null
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    //预热结束后才开始记录
+    private volatile boolean recording;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param servlet 已经初始化好的MyDispatcherServlet
+     * @param targets 请求列表
+     * @param workers 并发的worker数
+     * @param open 是否按固定速率发请求
+     * @param rate open模式下每秒的请求数
+     */
+    public MyLoadGenerator(MyDispatcherServlet servlet, List<Target> targets, int workers, boolean open, int rate) {
+
+        if(targets.isEmpty()){
+            throw new IllegalArgumentException("没有配置请求");
+        }
+        this.servlet = servlet;
+        this.targets = targets;
+        this.workers = workers;
+        this.open = open;
+        this.rate = rate;
+        this.cumulativeWeights = new int[targets.size()];
+        int total = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            total += targets.get(i).weight;
+            cumulativeWeights[i] = total;
+        }
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()){
+            this.threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }else{
+            this.threadBean = null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        //配置先在classpath中查找,找不到时当作文件系统中的路径
+        Properties config = new Properties();
+        String location = args.length > 0 ? args[0] : "load.properties";
+        InputStream is = MyLoadGenerator.class.getClassLoader().getResourceAsStream(location);
+        if(null == is){
+            File file = new File(location);
+            if(!file.isFile()){
+                throw new IOException("找不到压测配置: " + location);
+            }
+            is = new FileInputStream(file);
+        }
+        try {
+            config.load(is);
+        } finally {
+            is.close();
+        }
+
+        MyDispatcherServlet servlet = new MyDispatcherServlet();
+        servlet.init(new MyInMemoryServletConfig("mySpring")
+                .addInitParameter("contextConfigLocation", config.getProperty("contextConfigLocation", "application.properties")));
+        try {
+            MyLoadGenerator generator = new MyLoadGenerator(servlet, parseTargets(config),
+                    Integer.parseInt(config.getProperty("workers", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                    "open".equalsIgnoreCase(config.getProperty("mode", "closed")),
+                    Integer.parseInt(config.getProperty("rate", "10000")));
+            generator.run(Integer.parseInt(config.getProperty("warmupSeconds", "3")),
+                    Integer.parseInt(config.getProperty("durationSeconds", "10")), System.out);
+        } finally {
+            servlet.destroy();
+        }
+    }
+
+    /**
+     * 解析配置中的请求,格式为 request.名称=权重 方法 url [请求体],比如
+     * request.fruit=3 GET /test/fruit?name=apple&count=3
+     * request.json=1 POST /test/fruitJson {"name":"apple"}
+     * @param config
+     * @return 按名称排序的请求列表
+     */
+    public static List<Target> parseTargets(Properties config) throws UnsupportedEncodingException {
+
+        List<Target> targets = new ArrayList<>();
+        for (String key : new TreeSet<>(config.stringPropertyNames())) {
+            if(!key.startsWith(REQUEST_PREFIX)){
+                continue;
+            }
+            String[] parts = config.getProperty(key).trim().split("\\s+", 4);
+            if(parts.length < 3){
+                throw new IllegalArgumentException("请求的格式应为: 权重 方法 url [请求体], " + key);
+            }
+            targets.add(new Target(key.substring(REQUEST_PREFIX.length()), Integer.parseInt(parts[0]),
+                    parts[1], parts[2], parts.length > 3 ? parts[3] : null));
+        }
+        return targets;
+    }
+
+    /**
+     * 先预热再测量,测量结束后输出报告
+     * @param warmupSeconds 预热的秒数,这段时间的请求不计入结果
+     * @param durationSeconds 测量的秒数
+     * @param out 报告的输出
+     */
+    public void run(int warmupSeconds, int durationSeconds, PrintStream out) throws Exception {
+
+        final AtomicInteger count = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "my-spring-load-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long start = System.nanoTime();
+        recording = true;
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        recording = false;
+        long elapsed = System.nanoTime() - start;
+        running = false;
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        report(out, elapsed, gcCount() - gcCount, gcTime() - gcTime);
+    }
+
+    /**
+     * worker线程,复用自己的请求和响应对象
+     */
+    private void work() {
+
+        MyInMemoryRequest req = new MyInMemoryRequest();
+        MyInMemoryResponse resp = new MyInMemoryResponse();
+        long threadId = Thread.currentThread().getId();
+
+        //open模式下每个worker承担rate/workers的速率
+        long interval = open ? TimeUnit.SECONDS.toNanos(1) * workers / Math.max(1, rate) : 0;
+        long next = System.nanoTime();
+        while (running) {
+            long intended;
+            if(open){
+                intended = next;
+                next += interval;
+                //不使用自旋等待,worker数多于cpu核数时自旋会抢走处理请求的cpu;代价是耗时中包含parkNanos唤醒的延迟(通常几十微秒)
+                long wait = intended - System.nanoTime();
+                if(wait > 0){
+                    LockSupport.parkNanos(wait);
+                }
+            }else{
+                intended = System.nanoTime();
+            }
+
+            Target target = choose();
+            target.prepare(req, resp);
+            long allocated = null == threadBean ? 0 : threadBean.getThreadAllocatedBytes(threadId);
+            boolean failed;
+            try {
+                servlet.service(req, resp);
+                failed = resp.getStatus() >= 400;
+            } catch (Exception e) {
+                failed = true;
+            }
+            long latency = System.nanoTime() - intended;
+            if(recording){
+                target.record(latency, failed, null == threadBean ? 0 : threadBean.getThreadAllocatedBytes(threadId) - allocated);
+            }
+        }
+    }
+
+    private Target choose() {
+
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if(value < cumulativeWeights[i]){
+                return targets.get(i);
+            }
+        }
+        return targets.get(targets.size() - 1);
+    }
+
+    private void report(PrintStream out, long elapsed, long gcCount, long gcTime) {
+
+        double seconds = elapsed / 1_000_000_000.0;
+        MyHistogram total = new MyHistogram();
+        long requests = 0;
+        long errors = 0;
+        long allocated = 0;
+
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format(Locale.ROOT, "模式 %s, worker %d%s, 测量 %.1fs%n", open ? "open" : "closed", workers,
+                open ? ", 目标速率 " + rate + "/s" : "", seconds));
+        sb.append(String.format(Locale.ROOT, "%-16s %10s %10s %8s %10s %10s %10s %10s %10s %10s %12s%n",
+                "request", "count", "req/s", "errors", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)", "alloc(B/req)"));
+        for (Target target : targets) {
+            MyHistogram histogram = target.latency;
+            long count = histogram.getCount();
+            appendRow(sb, target.name, histogram, count / seconds, target.errors.sum(),
+                    count == 0 ? 0 : target.allocated.sum() / count);
+            requests += count;
+            errors += target.errors.sum();
+            allocated += target.allocated.sum();
+        }
+        for (Target target : targets) {
+            total.merge(target.latency);
+        }
+        appendRow(sb, "total", total, requests / seconds, errors, requests == 0 ? 0 : allocated / requests);
+
+        if(null != threadBean){
+            sb.append(String.format(Locale.ROOT, "分配速率 %.1fMB/s%n", allocated / seconds / 1024 / 1024));
+        }
+        sb.append(String.format(Locale.ROOT, "GC %d次, 耗时%dms%n", gcCount, gcTime));
+        out.print(sb);
+    }
+
+    private static void appendRow(StringBuilder sb, String name, MyHistogram histogram, double throughput, long errors, long allocated) {
+
+        sb.append(String.format(Locale.ROOT, "%-16s %10d %10.0f %8d %10.1f", name, histogram.getCount(), throughput, errors,
+                histogram.getMean() / 1000));
+        for (double quantile : QUANTILES) {
+            sb.append(String.format(Locale.ROOT, " %10.1f", histogram.getPercentile(quantile) / 1000.0));
+        }
+        sb.append(String.format(Locale.ROOT, " %10.1f %12d%n", histogram.getMax() / 1000.0, allocated));
+    }
+
+    private static long gcCount() {
+
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * 压测的一个请求
+     */
+    public static class Target {
+
+        private final String name;
+
+        private final int weight;
+
+        private final String method;
+
+        private final String uri;
+
+        private final String queryString;
+
+        //解析好的请求参数,name和value交替存放
+        private final String[] params;
+
+        private final byte[] body;
+
+        private final MyHistogram latency = new MyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder allocated = new LongAdder();
+
+        /**
+         * @param name 报告中显示的名称
+         * @param weight 权重
+         * @param method 请求方法
+         * @param url 可以带参数
+         * @param body JSON请求体,可以为null
+         */
+        public Target(String name, int weight, String method, String url, String body) throws UnsupportedEncodingException {
+
+            this.name = name;
+            this.weight = weight;
+            this.method = method;
+            int question = url.indexOf('?');
+            this.uri = question < 0 ? url : url.substring(0, question);
+            this.queryString = question < 0 ? null : url.substring(question + 1);
+            List<String> params = new ArrayList<>();
+            if(null != queryString){
+                for (String pair : queryString.split("&")) {
+                    if(pair.isEmpty()){
+                        continue;
+                    }
+                    int equals = pair.indexOf('=');
+                    params.add(URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8"));
+                    params.add(equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+            this.params = params.toArray(new String[params.size()]);
+            this.body = null == body ? null : body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void prepare(MyInMemoryRequest req, MyInMemoryResponse resp) {
+
+            req.reset();
+            resp.reset();
+            req.setMethod(method);
+            req.setRequestURI(uri);
+            req.setQueryString(queryString);
+            for (int i = 0; i < params.length; i += 2) {
+                req.addParameter(params[i], params[i + 1]);
+            }
+            if(null != body){
+                req.setContentType("application/json;charset=UTF-8");
+                req.setContent(body);
+            }
+        }
+
+        private void record(long latency, boolean failed, long allocated) {
+
+            this.latency.record(latency);
+            this.allocated.add(allocated);
+            if(failed){
+                errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.longye.spring.framework.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图
+ * 按对数分桶:每个2的幂区间再平均分成4个桶,桶的上界和实际值的误差不超过25%,所有的long值只需要248个桶
+ * 记录时只是一次数组下标计算和几次累加,不加锁。大部分请求落在相同的几个桶中,所以每个桶和次数、总和一样使用LongAdder,
+ * 高并发下按线程分散到不同的计数单元,不会所有线程都在同一个缓存行上CAS
+ */
+public class MyHistogram {
+
+    //每个2的幂区间再拆分的位数,2位即4个桶
+    private static final int SUB_BITS = 2;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public MyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     * @param value 单位纳秒,小于0的按0记录
+     */
+    public void record(long value) {
+
+        if(value < 0){
+            value = 0;
+        }
+        buckets[bucket(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long c = count.sum();
+        return c == 0 ? 0 : (double) sum.sum() / c;
+    }
+
+    /**
+     * 估算分位数,返回所在桶的上界,不会超过记录过的最大值
+     * @param quantile 0到1之间,比如0.99
+     * @return 单位纳秒,没有记录时返回0
+     */
+    public long getPercentile(double quantile) {
+
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets[i].sum();
+            total += snapshot[i];
+        }
+        if(total == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if(seen >= rank){
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 把另一个直方图的记录加到该直方图中,比如用每个接口的直方图计算整体的分位数
+     * @param other
+     */
+    public void merge(MyHistogram other) {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = other.buckets[i].sum();
+            if(value != 0){
+                buckets[i].add(value);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulate(other.max.get());
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i].reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int bucket(long value) {
+
+        if(value < SUB_COUNT){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    static long lowerBound(int bucket) {
+
+        if(bucket < SUB_COUNT){
+            return bucket;
+        }
+        int exponent = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        long sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        return (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    }
+
+    static long upperBound(int bucket) {
+
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
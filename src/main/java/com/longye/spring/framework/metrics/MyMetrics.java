@@ -0,0 +1,364 @@
+package com.longye.spring.framework.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 请求分发的统计数据
+ * 全局记录每个分发阶段的耗时直方图,每个url再单独记录请求数、异常数和各阶段的耗时
+ * 可以输出为文本或者JSON,由MyDispatcherServlet在保留的url上返回
+ */
+public class MyMetrics {
+
+    //输出时的分位数
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /**
+     * 一次请求分发的各个阶段
+     */
+    public enum Phase {
+        //查找url对应的handler
+        ROUTE,
+        //绑定方法参数
+        BIND,
+        //执行controller的方法,异步接口只包括方法本身的执行
+        INVOKE,
+        //渲染页面并写入响应
+        RENDER,
+        //整个请求,异步接口到写完响应为止
+        TOTAL;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder notFound = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final MyHistogram[] phases = newHistograms();
+
+    private final List<HandlerMetrics> handlers = new CopyOnWriteArrayList<>();
+
+    //其他模块的统计数据,输出时才读取当前的值
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    /**
+     * 为一个url注册统计数据
+     * @param url
+     * @return
+     */
+    public HandlerMetrics register(String url) {
+
+        HandlerMetrics metrics = new HandlerMetrics(url);
+        handlers.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * 接口注销后移除它的统计数据
+     * @param metrics
+     */
+    public void unregister(HandlerMetrics metrics) {
+        handlers.remove(metrics);
+    }
+
+    /**
+     * 注册一项其他模块的统计数据,比如缓冲池的命中次数,和请求数等一起输出
+     * @param name 名称,文本和JSON中都使用这个名称
+     * @param supplier 输出时调用,需要是线程安全的
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.add(new Gauge(name, supplier));
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     * @param handler 还没有找到handler时为null
+     * @param phase
+     * @param nanos
+     */
+    public void record(HandlerMetrics handler, Phase phase, long nanos) {
+
+        phases[phase.ordinal()].record(nanos);
+        if(null != handler){
+            handler.phases[phase.ordinal()].record(nanos);
+            if(phase == Phase.TOTAL){
+                handler.requests.increment();
+            }
+        }
+        if(phase == Phase.TOTAL){
+            requests.increment();
+        }
+    }
+
+    /**
+     * 记录一次没有匹配到url的请求,也计入请求数
+     */
+    public void recordNotFound() {
+
+        notFound.increment();
+        requests.increment();
+    }
+
+    /**
+     * 记录一次异常,也计入请求数,异常请求的耗时不计入直方图
+     * @param handler 还没有找到handler时为null
+     */
+    public void recordError(HandlerMetrics handler) {
+
+        errors.increment();
+        requests.increment();
+        if(null != handler){
+            handler.errors.increment();
+            handler.requests.increment();
+        }
+    }
+
+    /**
+     * 记录一次因为并发数超过上限而被拒绝的请求,也计入请求数
+     * @param handler
+     */
+    public void recordRejected(HandlerMetrics handler) {
+
+        rejected.increment();
+        requests.increment();
+        if(null != handler){
+            handler.rejected.increment();
+            handler.requests.increment();
+        }
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public MyHistogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    public List<HandlerMetrics> getHandlers() {
+        return handlers;
+    }
+
+    /**
+     * 输出为文本,耗时的单位为微秒
+     * @param writer
+     * @throws IOException
+     */
+    public void writeText(Writer writer) throws IOException {
+
+        writer.write("uptime_seconds " + (System.currentTimeMillis() - startTime) / 1000 + "\n");
+        writer.write("requests " + getRequests() + "\n");
+        writer.write("not_found " + getNotFound() + "\n");
+        writer.write("errors " + getErrors() + "\n");
+        writer.write("rejected " + getRejected() + "\n");
+        for (Gauge gauge : gauges) {
+            writer.write(gauge.name + " " + gauge.supplier.getAsLong() + "\n");
+        }
+        for (Phase phase : Phase.values()) {
+            writer.write("phase " + phase.label);
+            writeText(writer, phases[phase.ordinal()]);
+        }
+        for (HandlerMetrics handler : handlers) {
+            writer.write("\nhandler " + handler.url + " requests=" + handler.getRequests() + " errors=" + handler.getErrors()
+                    + " rejected=" + handler.getRejected() + "\n");
+            for (Phase phase : Phase.values()) {
+                if(phase == Phase.ROUTE){
+                    continue;
+                }
+                writer.write("  " + phase.label);
+                writeText(writer, handler.phases[phase.ordinal()]);
+            }
+        }
+    }
+
+    private static void writeText(Writer writer, MyHistogram histogram) throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(" count=").append(histogram.getCount());
+        sb.append(" mean=").append(micros(histogram.getMean()));
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sb.append(' ').append(QUANTILE_NAMES[i]).append('=').append(micros(histogram.getPercentile(QUANTILES[i])));
+        }
+        sb.append(" max=").append(micros(histogram.getMax())).append('\n');
+        writer.write(sb.toString());
+    }
+
+    /**
+     * 输出为JSON,耗时的单位为微秒
+     * @param writer
+     * @throws IOException
+     */
+    public void writeJson(Writer writer) throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"uptimeSeconds\":").append((System.currentTimeMillis() - startTime) / 1000);
+        sb.append(",\"requests\":").append(getRequests());
+        sb.append(",\"notFound\":").append(getNotFound());
+        sb.append(",\"errors\":").append(getErrors());
+        sb.append(",\"rejected\":").append(getRejected());
+        sb.append(",\"gauges\":{");
+        for (int i = 0; i < gauges.size(); i++) {
+            Gauge gauge = gauges.get(i);
+            if(i > 0){
+                sb.append(',');
+            }
+            appendString(sb, gauge.name);
+            sb.append(':').append(gauge.supplier.getAsLong());
+        }
+        sb.append('}');
+        sb.append(",\"phases\":");
+        appendJson(sb, phases, false);
+        sb.append(",\"handlers\":[");
+        boolean first = true;
+        for (HandlerMetrics handler : handlers) {
+            if(!first){
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"url\":");
+            appendString(sb, handler.url);
+            sb.append(",\"requests\":").append(handler.getRequests());
+            sb.append(",\"errors\":").append(handler.getErrors());
+            sb.append(",\"rejected\":").append(handler.getRejected());
+            sb.append(",\"phases\":");
+            appendJson(sb, handler.phases, true);
+            sb.append('}');
+        }
+        sb.append("]}");
+        writer.write(sb.toString());
+    }
+
+    private static void appendJson(StringBuilder sb, MyHistogram[] histograms, boolean skipRoute) {
+
+        sb.append('{');
+        boolean first = true;
+        for (Phase phase : Phase.values()) {
+            if(skipRoute && phase == Phase.ROUTE){
+                continue;
+            }
+            if(!first){
+                sb.append(',');
+            }
+            first = false;
+            MyHistogram histogram = histograms[phase.ordinal()];
+            sb.append('"').append(phase.label).append("\":{\"count\":").append(histogram.getCount());
+            sb.append(",\"mean\":").append(micros(histogram.getMean()));
+            for (int i = 0; i < QUANTILES.length; i++) {
+                sb.append(",\"").append(QUANTILE_NAMES[i]).append("\":").append(micros(histogram.getPercentile(QUANTILES[i])));
+            }
+            sb.append(",\"max\":").append(micros(histogram.getMax())).append('}');
+        }
+        sb.append('}');
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\'){
+                sb.append('\\').append(c);
+            }else if(c < 0x20){
+                sb.append(String.format("\\u%04x", (int) c));
+            }else{
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String micros(double nanos) {
+
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+
+    private static MyHistogram[] newHistograms() {
+
+        MyHistogram[] histograms = new MyHistogram[Phase.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new MyHistogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * 一个url的统计数据,ROUTE阶段在找到handler之前,只有全局的统计
+     */
+    public static class HandlerMetrics {
+
+        private final String url;
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private final MyHistogram[] phases = newHistograms();
+
+        public HandlerMetrics(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public MyHistogram getHistogram(Phase phase) {
+            return phases[phase.ordinal()];
+        }
+    }
+
+    /**
+     * 一项输出时才读取的统计数据
+     */
+    private static class Gauge {
+
+        private final String name;
+
+        private final LongSupplier supplier;
+
+        Gauge(String name, LongSupplier supplier) {
+            this.name = name;
+            this.supplier = supplier;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.longye.spring.framework.server;
+
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * 一个HTTP/1.1连接
+ * 读写都在selector线程中进行,请求完整读取后交给工作线程处理,同一个连接同时只处理一个请求
+ * 请求和响应对象在连接上复用,keep-alive的连接处理下一个请求前reset
+ */
+class MyHttpConnection {
+
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    final SocketChannel channel;
+
+    final SelectionKey key;
+
+    private final int maxHeaderSize;
+
+    private final int maxBodySize;
+
+    private ByteBuffer in;
+
+    //等待写出的响应,状态行和header一个,响应体一个
+    private ByteBuffer[] out;
+
+    //响应体为文件时,header写完后用transferTo从文件直接传输到socket
+    private FileChannel file;
+
+    private long filePosition;
+
+    private long fileEnd;
+
+    final MyInMemoryRequest request = new MyInMemoryRequest();
+
+    final MyInMemoryResponse response = new MyInMemoryResponse();
+
+    //当前请求处理完后是否保持连接
+    boolean keepAlive;
+
+    //请求是否正在被工作线程处理,处理中的连接不会因为空闲被关闭
+    volatile boolean processing;
+
+    //最后一次读写的时间
+    long lastActive = System.currentTimeMillis();
+
+    MyHttpConnection(SocketChannel channel, SelectionKey key, int maxHeaderSize, int maxBodySize) {
+        this.channel = channel;
+        this.key = key;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.in = ByteBuffer.allocate(Math.min(4096, maxHeaderSize));
+    }
+
+    /**
+     * 从channel中读取数据
+     * @return 连接已经被客户端关闭时返回false
+     * @throws IOException
+     */
+    boolean read() throws IOException {
+
+        if(!in.hasRemaining()){
+            grow(in.capacity() * 2);
+        }
+        int n = channel.read(in);
+        lastActive = System.currentTimeMillis();
+        return n >= 0;
+    }
+
+    /**
+     * 尝试从已经读取的数据中解析出一个完整的请求,解析结果写入request
+     * @return 数据还不完整时返回false
+     * @throws ParseException 请求格式错误或者超出大小限制
+     */
+    boolean parse() throws ParseException {
+
+        int headerEnd = indexOfHeaderEnd();
+        if(headerEnd < 0){
+            if(in.position() >= maxHeaderSize){
+                throw new ParseException(431, "Request Header Fields Too Large");
+            }
+            return false;
+        }
+
+        String head = new String(in.array(), 0, headerEnd, StandardCharsets.ISO_8859_1);
+        request.reset();
+        response.reset();
+        parseHead(head);
+
+        if(null != request.getHeader("Transfer-Encoding")){
+            throw new ParseException(501, "Transfer-Encoding Not Implemented");
+        }
+        int contentLength = 0;
+        String length = request.getHeader("Content-Length");
+        if(null != length){
+            try {
+                contentLength = Integer.parseInt(length.trim());
+            } catch (NumberFormatException e) {
+                throw new ParseException(400, "Bad Content-Length");
+            }
+            if(contentLength < 0){
+                throw new ParseException(400, "Bad Content-Length");
+            }
+            if(contentLength > maxBodySize){
+                throw new ParseException(413, "Payload Too Large");
+            }
+        }
+
+        int bodyStart = headerEnd + 4;
+        int total = bodyStart + contentLength;
+        if(in.position() < total){
+            if(in.capacity() < total){
+                grow(total);
+            }
+            return false;
+        }
+
+        if(contentLength > 0){
+            byte[] body = new byte[contentLength];
+            System.arraycopy(in.array(), bodyStart, body, 0, contentLength);
+            request.setContent(body);
+            String contentType = request.getContentType();
+            if(null != contentType && contentType.toLowerCase(Locale.ENGLISH).startsWith(FORM_CONTENT_TYPE)){
+                parseParameters(new String(body, StandardCharsets.ISO_8859_1));
+            }
+        }
+
+        //pipeline中后续请求的数据移到缓冲区开头
+        in.flip();
+        in.position(total);
+        in.compact();
+        return true;
+    }
+
+    private void parseHead(String head) throws ParseException {
+
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if(requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")){
+            throw new ParseException(400, "Bad Request Line");
+        }
+
+        request.setMethod(requestLine[0]);
+        request.setProtocol(requestLine[2]);
+        String uri = requestLine[1];
+        int query = uri.indexOf('?');
+        if(query >= 0){
+            request.setQueryString(uri.substring(query + 1));
+            parseParameters(uri.substring(query + 1));
+            uri = uri.substring(0, query);
+        }
+        request.setRequestURI(uri);
+
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int colon = line.indexOf(':');
+            if(colon <= 0){
+                throw new ParseException(400, "Bad Header");
+            }
+            request.addHeader(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+        request.setContentType(request.getHeader("Content-Type"));
+
+        InetSocketAddress remote = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+        if(null != remote){
+            request.setRemoteAddr(remote.getAddress().getHostAddress());
+            request.setRemotePort(remote.getPort());
+        }
+        request.setServerPort(channel.socket().getLocalPort());
+        String host = request.getHeader("Host");
+        if(null != host){
+            int colon = host.lastIndexOf(':');
+            request.setServerName(colon > 0 && host.indexOf(']') < colon ? host.substring(0, colon) : host);
+        }
+
+        //HTTP/1.1默认保持连接,HTTP/1.0需要显式声明
+        String connection = request.getHeader("Connection");
+        if("HTTP/1.0".equals(requestLine[2])){
+            keepAlive = null != connection && connection.equalsIgnoreCase("keep-alive");
+        }else{
+            keepAlive = null == connection || !connection.equalsIgnoreCase("close");
+        }
+    }
+
+    private void parseParameters(String query) throws ParseException {
+
+        try {
+            for (String pair : query.split("&")) {
+                if(pair.isEmpty()){
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String name = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                request.addParameter(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new ParseException(400, "Bad Query String");
+        }
+    }
+
+    private int indexOfHeaderEnd() {
+
+        byte[] data = in.array();
+        int limit = in.position() - 3;
+        for (int i = 0; i < limit; i++) {
+            if(data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n'){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void grow(int capacity) {
+
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        in.flip();
+        buffer.put(in);
+        in = buffer;
+    }
+
+    /**
+     * 把response编码成HTTP响应,等待selector线程写出
+     * @param date 当前时间的Date header
+     */
+    void prepareResponse(String date) throws IOException {
+
+        boolean head = "HEAD".equals(request.getMethod());
+        File fileBody = head ? null : response.getFileBody();
+        byte[] body = null == fileBody ? response.getContentAsByteArray() : new byte[0];
+        long contentLength = null == fileBody ? body.length : response.getFileCount();
+        //HEAD请求没有响应体,Content-Length使用接口设置的值
+        if(head && response.getContentLength() >= 0){
+            contentLength = response.getContentLength();
+        }
+        int status = response.getStatus();
+
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+        sb.append("Date: ").append(date).append("\r\n");
+        String contentType = response.getContentType();
+        if(null != contentType){
+            sb.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        for (String name : response.getHeaderNames()) {
+            if(name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Connection")
+                    || name.equalsIgnoreCase("Date") || name.equalsIgnoreCase("Content-Type")){
+                continue;
+            }
+            for (String value : response.getHeaders(name)) {
+                sb.append(name).append(": ").append(value).append("\r\n");
+            }
+        }
+        sb.append("Content-Length: ").append(contentLength).append("\r\n");
+        if(!keepAlive){
+            sb.append("Connection: close\r\n");
+        }
+        sb.append("\r\n");
+
+        if(null != fileBody){
+            file = FileChannel.open(fileBody.toPath(), StandardOpenOption.READ);
+            filePosition = response.getFilePosition();
+            fileEnd = filePosition + contentLength;
+        }
+        out = new ByteBuffer[]{
+                ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1)),
+                ByteBuffer.wrap(body, 0, head ? 0 : body.length)
+        };
+    }
+
+    /**
+     * 直接输出错误响应,之后关闭连接
+     * @param status
+     * @param message
+     */
+    void prepareError(int status, String message, String date) {
+
+        byte[] body = (status + " " + message).getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + ' ' + reason(status) + "\r\n"
+                + "Date: " + date + "\r\n"
+                + "Content-Type: text/plain;charset=UTF-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        keepAlive = false;
+        out = new ByteBuffer[]{ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)), ByteBuffer.wrap(body)};
+    }
+
+    /**
+     * 写出响应
+     * @return 响应是否已经全部写出
+     * @throws IOException
+     */
+    boolean write() throws IOException {
+
+        if(out[0].hasRemaining() || out[out.length - 1].hasRemaining()){
+            channel.write(out);
+            lastActive = System.currentTimeMillis();
+            if(out[0].hasRemaining() || out[out.length - 1].hasRemaining()){
+                return false;
+            }
+        }
+        if(null != file && !transferFile()){
+            return false;
+        }
+        out = null;
+        return true;
+    }
+
+    /**
+     * 把文件传输到socket,不经过用户态的缓冲区
+     * @return 文件是否已经全部传输完
+     */
+    private boolean transferFile() throws IOException {
+
+        while (filePosition < fileEnd) {
+            long n = file.transferTo(filePosition, fileEnd - filePosition, channel);
+            if(n <= 0){
+                if(filePosition >= file.size()){
+                    //文件在传输过程中被截断,只能关闭连接
+                    throw new IOException("文件已经被修改");
+                }
+                //socket的发送缓冲区满了,等待可写
+                return false;
+            }
+            filePosition += n;
+            lastActive = System.currentTimeMillis();
+        }
+        closeFile();
+        return true;
+    }
+
+    private void closeFile() {
+
+        if(null == file){
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+        file = null;
+    }
+
+    void close() {
+
+        closeFile();
+
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String reason(int status) {
+
+        switch (status) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 413: return "Payload Too Large";
+            case 416: return "Range Not Satisfiable";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * 请求无法解析,status为需要返回的状态码
+     */
+    static class ParseException extends Exception {
+
+        final int status;
+
+        ParseException(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+}
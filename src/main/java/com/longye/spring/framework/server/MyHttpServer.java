@@ -0,0 +1,384 @@
+package com.longye.spring.framework.server;
+
+import com.longye.spring.framework.context.ApplicationContext;
+import com.longye.spring.framework.servlet.MyDispatcherServlet;
+import com.longye.spring.framework.servlet.memory.MyInMemoryServletConfig;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌的HTTP/1.1服务器,不需要servlet容器就可以运行MyDispatcherServlet
+ * 一个selector线程负责接收连接和读写,请求完整读取后交给工作线程池执行MyDispatcherServlet,响应再交回selector线程写出
+ * 支持keep-alive和pipeline,不支持chunked请求体和servlet的异步处理(异步接口会在工作线程中同步等待结果)
+ * 启动: java com.longye.spring.framework.server.MyHttpServer [application.properties]
+ */
+public class MyHttpServer implements Runnable {
+
+    //监听的端口
+    private static final String SERVER_PORT = "serverPort";
+
+    //处理请求的工作线程数
+    private static final String SERVER_WORKERS = "serverWorkers";
+
+    //keep-alive连接的空闲超时时间
+    private static final String SERVER_IDLE_TIMEOUT = "serverIdleTimeout";
+
+    //请求行和header的最大字节数
+    private static final String SERVER_MAX_HEADER_SIZE = "serverMaxHeaderSize";
+
+    //请求体的最大字节数
+    private static final String SERVER_MAX_BODY_SIZE = "serverMaxBodySize";
+
+    //等待工作线程处理的请求数上限,超过后直接返回503
+    private static final String SERVER_QUEUE_SIZE = "serverQueueSize";
+
+    //接收连接失败后(比如文件句柄用完)暂停接收的时间,避免selector一直被唤醒空转
+    private static final long ACCEPT_PAUSE = 1000;
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final MyDispatcherServlet servlet;
+
+    private final int port;
+
+    private final long idleTimeout;
+
+    private final int maxHeaderSize;
+
+    private final int maxBodySize;
+
+    private final ExecutorService workers;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel serverChannel;
+
+    //工作线程处理完的连接,由selector线程写出响应
+    private final Queue<MyHttpConnection> completed = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    private Thread selectorThread;
+
+    //暂停接收连接的开始时间,没有暂停时为0,只在selector线程中访问
+    private long acceptPausedAt;
+
+    //Date header每秒更新一次,只在selector线程中修改
+    private volatile String date;
+
+    private long dateTime;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+
+    /**
+     * @param servlet 已经初始化好的MyDispatcherServlet
+     * @param properties 服务器的配置,一般就是ApplicationContext中的配置
+     * @throws IOException
+     */
+    public MyHttpServer(MyDispatcherServlet servlet, Properties properties) throws IOException {
+
+        this.servlet = servlet;
+        this.port = Integer.parseInt(properties.getProperty(SERVER_PORT, "8080"));
+        this.idleTimeout = Long.parseLong(properties.getProperty(SERVER_IDLE_TIMEOUT, "60000"));
+        this.maxHeaderSize = Integer.parseInt(properties.getProperty(SERVER_MAX_HEADER_SIZE, "8192"));
+        this.maxBodySize = Integer.parseInt(properties.getProperty(SERVER_MAX_BODY_SIZE, String.valueOf(1024 * 1024)));
+        int poolSize = Integer.parseInt(properties.getProperty(SERVER_WORKERS,
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+        int queueSize = Integer.parseInt(properties.getProperty(SERVER_QUEUE_SIZE, "1024"));
+
+        //队列有界,过载时拒绝新的请求,而不是无限堆积让所有请求都超时
+        final AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "my-spring-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        updateDate(System.currentTimeMillis());
+
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String location = args.length > 0 ? args[0] : "application.properties";
+
+        long start = System.currentTimeMillis();
+        final MyDispatcherServlet servlet = new MyDispatcherServlet();
+        servlet.init(new MyInMemoryServletConfig("mySpring").addInitParameter("contextConfigLocation", location));
+
+        final MyHttpServer server = new MyHttpServer(servlet, ApplicationContext.getProperties());
+        server.start();
+        System.out.println("MySpring 已经在端口" + server.getPort() + "启动,耗时" + (System.currentTimeMillis() - start) + "ms......");
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.stop();
+            }
+        }, "my-spring-shutdown"));
+        server.selectorThread.join();
+    }
+
+    /**
+     * 在新线程中启动selector循环
+     */
+    public void start() {
+
+        running = true;
+        selectorThread = new Thread(this, "my-spring-selector");
+        selectorThread.start();
+    }
+
+    /**
+     * 停止接收请求,关闭所有连接并销毁MyDispatcherServlet
+     */
+    public void stop() {
+
+        if(!running){
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        servlet.destroy();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            while (running) {
+                selector.select(1000);
+
+                long now = System.currentTimeMillis();
+                if(now - dateTime >= 1000){
+                    updateDate(now);
+                    closeIdleConnections(now);
+                }
+                if(acceptPausedAt != 0 && now - acceptPausedAt >= ACCEPT_PAUSE){
+                    acceptPausedAt = 0;
+                    serverChannel.keyFor(selector).interestOps(SelectionKey.OP_ACCEPT);
+                }
+
+                //工作线程处理完的请求
+                MyHttpConnection connection;
+                while (null != (connection = completed.poll())) {
+                    write(connection);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()){
+                        continue;
+                    }
+                    if(key.isAcceptable()){
+                        accept();
+                    }else if(key.isReadable()){
+                        read((MyHttpConnection) key.attachment());
+                    }else if(key.isWritable()){
+                        write((MyHttpConnection) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if(key.attachment() instanceof MyHttpConnection){
+                    ((MyHttpConnection) key.attachment()).close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 接收所有等待中的连接
+     * 单个连接出错时只关闭该连接;accept本身出错时(比如文件句柄用完)暂停接收一段时间,selector循环不会因此结束
+     */
+    private void accept() {
+
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                System.out.println("接收连接失败,暂停" + ACCEPT_PAUSE + "ms: " + e);
+                acceptPausedAt = System.currentTimeMillis();
+                serverChannel.keyFor(selector).interestOps(0);
+                return;
+            }
+            if(null == channel){
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new MyHttpConnection(channel, key, maxHeaderSize, maxBodySize));
+            } catch (IOException e) {
+                System.out.println("初始化连接失败: " + e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void read(MyHttpConnection connection) {
+
+        try {
+            if(!connection.read()){
+                connection.close();
+                return;
+            }
+            dispatch(connection);
+        } catch (IOException | CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * 已经读取到完整的请求时,交给工作线程处理,处理期间不再读取该连接
+     */
+    private void dispatch(final MyHttpConnection connection) throws IOException {
+
+        try {
+            if(!connection.parse()){
+                return;
+            }
+        } catch (MyHttpConnection.ParseException e) {
+            connection.prepareError(e.status, e.getMessage(), date);
+            write(connection);
+            return;
+        }
+
+        connection.key.interestOps(0);
+        connection.processing = true;
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    service(connection);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //队列已满或者服务器正在停止
+            connection.prepareError(503, "Service Unavailable", date);
+            write(connection);
+        }
+    }
+
+    /**
+     * 在工作线程中执行MyDispatcherServlet
+     */
+    private void service(MyHttpConnection connection) {
+
+        try {
+            servlet.service(connection.request, connection.response);
+            connection.prepareResponse(date);
+        } catch (ServletException | IOException | RuntimeException e) {
+            connection.prepareError(500, "Internal Server Error", date);
+        } catch (Throwable e) {
+            //接口抛出的Error(StackOverflowError、AssertionError等)同样返回500,连接不能一直停在处理中的状态
+            connection.prepareError(500, "Internal Server Error", date);
+            e.printStackTrace();
+        } finally {
+            completed.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    private void write(MyHttpConnection connection) {
+
+        try {
+            if(!connection.write()){
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.processing = false;
+            if(!connection.keepAlive){
+                connection.close();
+                return;
+            }
+            connection.key.interestOps(SelectionKey.OP_READ);
+            //pipeline中已经读取到的下一个请求
+            dispatch(connection);
+        } catch (IOException | CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    private void closeIdleConnections(long now) {
+
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if(attachment instanceof MyHttpConnection){
+                MyHttpConnection connection = (MyHttpConnection) attachment;
+                if(!connection.processing && now - connection.lastActive > idleTimeout){
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void updateDate(long now) {
+
+        dateTime = now;
+        date = dateFormat.format(new Date(now));
+    }
+}
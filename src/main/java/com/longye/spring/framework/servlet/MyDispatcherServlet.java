@@ -1,26 +1,66 @@
 package com.longye.spring.framework.servlet;
 
 import com.longye.spring.framework.annotation.MyController;
+import com.longye.spring.framework.annotation.MyControllerAdvice;
+import com.longye.spring.framework.annotation.MyInterceptor;
 import com.longye.spring.framework.annotation.MyRequestMapping;
-import com.longye.spring.framework.annotation.MyRequestParam;
+import com.longye.spring.framework.annotation.MyResponseBody;
+import com.longye.spring.framework.bind.MyArgumentBinder;
+import com.longye.spring.framework.bind.MyConverter;
+import com.longye.spring.framework.buffer.MyBufferOutputStream;
+import com.longye.spring.framework.buffer.MyBufferPool;
+import com.longye.spring.framework.compress.MyCompression;
 import com.longye.spring.framework.context.ApplicationContext;
+import com.longye.spring.framework.context.MyStartupProfiler;
+import com.longye.spring.framework.exception.MyExceptionResolver;
+import com.longye.spring.framework.exception.MyHttpException;
+import com.longye.spring.framework.index.MyComponentIndex;
+import com.longye.spring.framework.json.MyJsonException;
+import com.longye.spring.framework.json.MyJsonMapper;
+import com.longye.spring.framework.json.MyJsonReader;
+import com.longye.spring.framework.json.MyJsonWriter;
+import com.longye.spring.framework.limit.MyConcurrencyLimit;
+import com.longye.spring.framework.metrics.MyMetrics;
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+import com.longye.spring.framework.view.MyTemplate;
+import com.longye.spring.framework.view.MyViewRepository;
 import com.longye.spring.view.MyModelAndView;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.lang.annotation.Annotation;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by tianl on 2018/10/17.
@@ -33,390 +73,1783 @@ public class MyDispatcherServlet extends HttpServlet{
     //本项目中所有静态文件存放的文件位置
     private static final String VIEWS = "views";
 
-    //handlerMapping容器,存储url和method的对应关系
-    private List<MyHandler> handlerMapping = new ArrayList<>();
+    //是否监听页面文件的修改,修改后不需要重启就能生效
+    private static final String VIEWS_WATCH = "viewsWatch";
 
-    //adapterMapping容器,方法适配,匹配方法的参数
-    private Map<MyHandler, MyAdapter> adapterMapping = new HashMap<>();
+    //页面的Content-Type,页面统一按UTF-8输出
+    private static final String CONTENT_TYPE_HTML = "text/html;charset=UTF-8";
 
-    //存储所有的静态文件
-    private List<ViewResolver> viewResolvers = new ArrayList<ViewResolver>();
+    //异步接口完成后处理响应的线程数
+    private static final String ASYNC_POOL_SIZE = "asyncPoolSize";
+
+    //异步接口的超时时间
+    private static final String ASYNC_TIMEOUT = "asyncTimeout";
+
+    //是否开启请求统计,默认关闭,统计的url会公开所有接口的耗时
+    private static final String METRICS = "metrics";
+
+    //查看请求统计的url
+    private static final String METRICS_PATH = "metricsPath";
+
+    //统计数据的Content-Type
+    private static final String CONTENT_TYPE_TEXT = "text/plain;charset=UTF-8";
+
+    private static final String CONTENT_TYPE_JSON = "application/json;charset=UTF-8";
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+
+    //所有接口同时处理的最大请求数,为0时不限制
+    private static final String MAX_CONCURRENCY = "maxConcurrency";
+
+    //单个接口的最大并发数的前缀,比如maxConcurrency./test/fruit=10
+    private static final String MAX_CONCURRENCY_PREFIX = "maxConcurrency.";
+
+    //是否根据耗时自动调整并发数上限
+    private static final String CONCURRENCY_ADAPTIVE = "concurrencyAdaptive";
+
+    //拒绝请求时Retry-After的秒数
+    private static final String CONCURRENCY_RETRY_AFTER = "concurrencyRetryAfter";
+
+    //在IOC容器和ServletContext中的名称
+    public static final String BEAN_NAME = "myDispatcherServlet";
+
+    //启动时每个接口预热的次数,为0时不预热
+    private static final String WARM_UP_ITERATIONS = "warmUpIterations";
+
+    //预热时依次尝试的参数示例值
+    private static final String[] SAMPLE_VALUES = {"1", "true", "warmup"};
+
+    //没有对应接口的请求,不记录堆栈所以可以共用一个实例
+    private static final MyHttpException NOT_FOUND = new MyHttpException(HttpServletResponse.SC_NOT_FOUND, null);
+
+    //没有拦截器的接口共用的空数组
+    private static final MyHandlerInterceptor[] NO_INTERCEPTORS = new MyHandlerInterceptor[0];
+
+    //批量请求的url,为空时关闭
+    private static final String BATCH_PATH = "batchPath";
+
+    //执行批量请求中子请求的线程数
+    private static final String BATCH_POOL_SIZE = "batchPoolSize";
+
+    //一次批量请求中最多的子请求数
+    private static final String BATCH_MAX_SIZE = "batchMaxSize";
+
+    //解析批量请求的请求体
+    private static final MyJsonMapper.TypeReader BATCH_READER = MyJsonMapper.reader(BatchRequest[].class);
+
+    //静态资源的url前缀和目录,比如/static/=static
+    private static final String STATIC_LOCATIONS = "staticLocations";
+
+    //静态资源的Cache-Control max-age,单位秒
+    private static final String STATIC_MAX_AGE = "staticMaxAge";
+
+    //是否根据Accept-Encoding压缩响应
+    private static final String COMPRESSION = "compression";
+
+    //页面小于该字节数时不压缩,有占位符的页面只有开启缓冲池时才能在输出前知道大小
+    private static final String COMPRESSION_MIN_SIZE = "compressionMinSize";
+
+    //是否把有占位符的页面先渲染到池化的堆外缓冲区中
+    private static final String BUFFER_POOL = "bufferPool";
+
+    //缓冲区每一块的字节数
+    private static final String BUFFER_CHUNK_SIZE = "bufferChunkSize";
+
+    //缓冲池最多使用的堆外内存字节数,超过后使用堆内存
+    private static final String BUFFER_POOL_MAX_BYTES = "bufferPoolMaxBytes";
+
+    //当前的路由快照,请求线程只读取这一个volatile字段,不加锁
+    private volatile Routes routes = new Routes(Collections.<MyHandler>emptyList());
+
+    //注册和注销接口时的锁,只有写的一方使用
+    private final Object routesLock = new Object();
+
+    //所有的拦截器,按order排好序,初始化之后不再修改
+    private List<MyHandlerInterceptor> handlerInterceptors = Collections.emptyList();
+
+    //@MyControllerAdvice中的异常处理方法,所有接口共用,没有时为null
+    private MyExceptionResolver globalResolver;
+
+    //已经打印过堆栈的异常类
+    private final Map<Class<?>, Boolean> loggedErrors = new ConcurrentHashMap<>();
+
+    //存储所有的静态文件,key为页面名
+    private MyViewRepository viewRepository;
+
+    //异步接口完成后,在该线程池中渲染页面并结束请求
+    private ExecutorService asyncExecutor;
+
+    //异步接口的超时时间,单位毫秒
+    private long asyncTimeout;
+
+    //请求统计,关闭时为null,分发时不会多调用一次System.nanoTime
+    private MyMetrics metrics;
+
+    //查看请求统计的url
+    private String metricsPath;
+
+    //静态资源,没有配置时为null
+    private MyResourceHandler resourceHandler;
+
+    //批量请求的url,关闭时为null
+    private String batchPath;
+
+    private int batchMaxSize;
+
+    //并行执行子请求的线程池
+    private ExecutorService batchExecutor;
+
+    //所有接口共用的并发数限制,不限制时为null
+    private MyConcurrencyLimit globalLimit;
+
+    private boolean concurrencyAdaptive;
+
+    private String retryAfter;
+
+    //是否压缩响应
+    private boolean compression;
+
+    private int compressionMinSize;
+
+    //渲染页面使用的缓冲池,关闭时为null
+    private MyBufferPool bufferPool;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
 
-        //初始化IOC容器
-        ApplicationContext.initIOC(config.getInitParameter(LOCATION));
+        //初始化IOC容器,同时开始统计启动耗时
+        ApplicationContext.initIOC(config.getInitParameter(LOCATION));
+        MyStartupProfiler profiler = ApplicationContext.getStartupProfiler();
+        long time = System.nanoTime();
+
+        //初始化请求统计,需要在映射url之前
+        initMetrics();
+        time = profiler.phase("initMetrics", time);
+
+        //初始化并发数限制,需要在映射url之前
+        initConcurrencyLimit();
+        time = profiler.phase("initConcurrencyLimit", time);
+
+        //初始化全局的异常处理方法,需要在映射url之前
+        initExceptionResolver();
+        time = profiler.phase("initExceptionResolver", time);
+
+        //映射相应的url和它请求的方法
+        initHandlerMapping();
+        time = profiler.phase("initHandlerMapping", time);
+
+        //确定每个接口使用的拦截器
+        initInterceptors();
+        time = profiler.phase("initInterceptors", time);
+
+        //加载所有的静态页面,比如我们之前的jsp文件,这里我们来自己定义一种文件类型.jspk文件
+        initViewResolvers();
+        time = profiler.phase("initViewResolvers", time);
+
+        //初始化静态资源
+        initResourceHandler();
+        time = profiler.phase("initResourceHandler", time);
+
+        //初始化处理异步接口的线程池
+        initAsyncExecutor();
+        time = profiler.phase("initAsyncExecutor", time);
+
+        //初始化批量请求
+        initBatch();
+        time = profiler.phase("initBatch", time);
+
+        //初始化响应压缩
+        initCompression();
+        time = profiler.phase("initCompression", time);
+
+        //初始化渲染页面的缓冲池,需要在预热之前
+        initBufferPool();
+        time = profiler.phase("initBufferPool", time);
+
+        //预热所有的接口,需要在其他初始化都完成之后
+        warmUp();
+        profiler.phase("warmUp", time);
+
+        //插件和功能模块通过它在运行时注册接口
+        ApplicationContext.getIOC().put(BEAN_NAME, this);
+        if(null != config.getServletContext()){
+            config.getServletContext().setAttribute(BEAN_NAME, this);
+        }
+
+        System.out.println("MySpring 已经初始化完成......");
+        profiler.print(System.out);
+
+    }
+
+    @Override
+    public void destroy() {
+
+        if(null != asyncExecutor){
+            asyncExecutor.shutdown();
+        }
+        if(null != batchExecutor){
+            batchExecutor.shutdown();
+        }
+        if(null != viewRepository){
+            viewRepository.close();
+        }
+        ApplicationContext.close();
+    }
+
+    /**
+     * 初始化请求统计
+     */
+    private void initMetrics() {
+
+        Properties properties = ApplicationContext.getProperties();
+        if(Boolean.parseBoolean(properties.getProperty(METRICS, "false"))){
+            metrics = new MyMetrics();
+            metricsPath = properties.getProperty(METRICS_PATH, "/__metrics");
+        }
+    }
+
+    /**
+     * 从IOC容器中找出所有的拦截器,按url为每个接口确定好拦截器数组,请求时直接遍历数组
+     */
+    private void initInterceptors() {
+
+        //同一个bean可能以多个key存放在IOC容器中
+        Set<Object> beans = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        List<MyHandlerInterceptor> interceptors = new ArrayList<>();
+        for (Object bean : ApplicationContext.getIOC().values()) {
+            if(bean instanceof MyHandlerInterceptor && beans.add(bean)){
+                interceptors.add((MyHandlerInterceptor) bean);
+            }
+        }
+        if(interceptors.isEmpty()){
+            return;
+        }
+        interceptors.sort((a, b) -> Integer.compare(interceptorOrder(a), interceptorOrder(b)));
+        handlerInterceptors = interceptors;
+
+        for (MyHandler handler : routes.handlers) {
+            applyInterceptors(handler);
+        }
+    }
+
+    /**
+     * 确定handler使用的拦截器
+     */
+    private void applyInterceptors(MyHandler handler) {
+
+        List<MyHandlerInterceptor> matched = new ArrayList<>();
+        for (MyHandlerInterceptor interceptor : handlerInterceptors) {
+            if(interceptorMatches(interceptor, handler.url)){
+                matched.add(interceptor);
+            }
+        }
+        if(!matched.isEmpty()){
+            handler.interceptors = matched.toArray(new MyHandlerInterceptor[matched.size()]);
+        }
+    }
+
+    private static int interceptorOrder(MyHandlerInterceptor interceptor) {
+
+        MyInterceptor annotation = ApplicationContext.getBeanClass(interceptor).getAnnotation(MyInterceptor.class);
+        return null == annotation ? 0 : annotation.order();
+    }
+
+    /**
+     * 拦截器是否拦截该url,没有@MyInterceptor注解的拦截器拦截所有接口
+     */
+    private static boolean interceptorMatches(MyHandlerInterceptor interceptor, String url) {
+
+        //@MyLazy的拦截器是代理,注解要从实际的类上读取
+        MyInterceptor annotation = ApplicationContext.getBeanClass(interceptor).getAnnotation(MyInterceptor.class);
+        if(null == annotation){
+            return true;
+        }
+        for (String pattern : annotation.exclude()) {
+            if(pathMatches(pattern, url)){
+                return false;
+            }
+        }
+        for (String pattern : annotation.value()) {
+            if(pathMatches(pattern, url)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * url是否匹配拦截器的url,按/拆分后逐段比较,*匹配一段,**匹配任意多段
+     * 接口url中的路径变量{xxx}只能被*或者**匹配
+     */
+    static boolean pathMatches(String pattern, String url) {
+        return pathMatches(split(pattern), 0, split(url), 0);
+    }
+
+    private static boolean pathMatches(String[] pattern, int p, String[] url, int u) {
+
+        while (p < pattern.length) {
+            String segment = pattern[p];
+            if("**".equals(segment)){
+                //**可以匹配0段或多段
+                for (int i = u; i <= url.length; i++) {
+                    if(pathMatches(pattern, p + 1, url, i)){
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if(u == url.length || (!"*".equals(segment) && !segment.equals(url[u]))){
+                return false;
+            }
+            p++;
+            u++;
+        }
+        return u == url.length;
+    }
+
+    private static String[] split(String path) {
+
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if(!segment.isEmpty()){
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    /**
+     * 初始化所有接口共用的并发数限制
+     */
+    private void initConcurrencyLimit() {
+
+        Properties properties = ApplicationContext.getProperties();
+        concurrencyAdaptive = Boolean.parseBoolean(properties.getProperty(CONCURRENCY_ADAPTIVE, "false"));
+        retryAfter = properties.getProperty(CONCURRENCY_RETRY_AFTER, "1");
+        int maxConcurrency = Integer.parseInt(properties.getProperty(MAX_CONCURRENCY, "0"));
+        if(maxConcurrency > 0){
+            globalLimit = new MyConcurrencyLimit(maxConcurrency, concurrencyAdaptive);
+        }
+    }
+
+    /**
+     * 创建单个接口的并发数限制,application.properties中的配置优先于@MyRequestMapping
+     * @param url
+     * @param method
+     * @return 不限制时为null
+     */
+    private MyConcurrencyLimit createConcurrencyLimit(String url, Method method) {
+
+        MyRequestMapping mapping = method.getAnnotation(MyRequestMapping.class);
+        int maxConcurrency = null == mapping ? 0 : mapping.maxConcurrency();
+        String value = ApplicationContext.getProperties().getProperty(MAX_CONCURRENCY_PREFIX + url);
+        if(null != value){
+            maxConcurrency = Integer.parseInt(value.trim());
+        }
+        return maxConcurrency > 0 ? new MyConcurrencyLimit(maxConcurrency, concurrencyAdaptive) : null;
+    }
+
+    /**
+     * 初始化静态资源,url前缀和目录在staticLocations中配置
+     */
+    private void initResourceHandler() {
+
+        Properties properties = ApplicationContext.getProperties();
+        String locations = properties.getProperty(STATIC_LOCATIONS);
+        if(null == locations || locations.trim().isEmpty()){
+            return;
+        }
+        MyResourceHandler handler = new MyResourceHandler(locations, Long.parseLong(properties.getProperty(STATIC_MAX_AGE, "3600")));
+        if(!handler.isEmpty()){
+            resourceHandler = handler;
+        }
+    }
+
+    /**
+     * 初始化响应压缩
+     */
+    private void initCompression() {
+
+        Properties properties = ApplicationContext.getProperties();
+        compression = Boolean.parseBoolean(properties.getProperty(COMPRESSION, "true"));
+        compressionMinSize = Integer.parseInt(properties.getProperty(COMPRESSION_MIN_SIZE, "256"));
+    }
+
+    /**
+     * 初始化渲染页面的缓冲池,开启请求统计时同时输出缓冲池的命中情况
+     */
+    private void initBufferPool() {
+
+        Properties properties = ApplicationContext.getProperties();
+        if(!Boolean.parseBoolean(properties.getProperty(BUFFER_POOL, "true"))){
+            return;
+        }
+        MyBufferPool pool = new MyBufferPool(Integer.parseInt(properties.getProperty(BUFFER_CHUNK_SIZE, "16384")),
+                Long.parseLong(properties.getProperty(BUFFER_POOL_MAX_BYTES, "16777216")));
+        if(null != metrics){
+            metrics.gauge("buffer_acquires", pool::getAcquires);
+            metrics.gauge("buffer_hits", pool::getHits);
+            metrics.gauge("buffer_heap_allocations", pool::getHeapAllocations);
+            metrics.gauge("buffer_allocated_bytes", pool::getAllocatedBytes);
+            metrics.gauge("buffer_pooled_chunks", pool::getPooled);
+        }
+        bufferPool = pool;
+    }
+
+    /**
+     * 初始化批量请求的线程池
+     * 队列有界,队列满了时拒绝子请求,该子请求的结果为503,发起批量请求的线程不会自己去执行而超过超时时间
+     */
+    private void initBatch() {
+
+        Properties properties = ApplicationContext.getProperties();
+        String path = properties.getProperty(BATCH_PATH, "").trim();
+        if(path.isEmpty()){
+            return;
+        }
+        batchPath = path;
+        batchMaxSize = Integer.parseInt(properties.getProperty(BATCH_MAX_SIZE, "50"));
+        int poolSize = Integer.parseInt(properties.getProperty(BATCH_POOL_SIZE,
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+
+        final AtomicInteger count = new AtomicInteger();
+        batchExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(poolSize * 16), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "my-spring-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 预热:用模拟请求把每个接口执行warmUpIterations次,包括参数绑定、方法调用、JSON序列化和页面渲染
+     * 让这些代码在接收真实请求之前就被JIT编译,新实例上线时第一批请求的耗时不会突然变高
+     * 预热会真正执行接口方法,不经过拦截器,也不计入请求统计,只应该在接口没有副作用时开启
+     */
+    private void warmUp() {
+
+        int iterations = Integer.parseInt(ApplicationContext.getProperties().getProperty(WARM_UP_ITERATIONS, "0"));
+        if(iterations <= 0){
+            return;
+        }
+
+        int warmed = 0;
+        List<MyHandler> handlers = routes.handlers;
+        for (MyHandler handler : handlers) {
+            try {
+                warmUp(handler, handler.adapter, iterations);
+                warmed++;
+            } catch (Exception e) {
+                //预热失败不影响启动,接口第一次被真实请求时再编译
+                System.out.println("接口" + handler.url + "预热失败: " + unwrap(e));
+            }
+        }
+        System.out.println("已预热" + warmed + "/" + handlers.size() + "个接口,每个" + iterations + "次......");
+    }
+
+    private void warmUp(MyHandler handler, MyAdapter adapter, int iterations) throws Exception {
+
+        MyInMemoryRequest req = new MyInMemoryRequest();
+        MyInMemoryResponse resp = new MyInMemoryResponse();
+        Map<String, String> pathVariables = new HashMap<>();
+        for (int i = 0; i < iterations; i++) {
+            req.reset();
+            resp.reset();
+            pathVariables.clear();
+            req.setRequestURI(handler.url);
+            for (MyArgumentBinder binder : adapter.binders) {
+                sample(binder, req, pathVariables);
+            }
+            //压缩和不压缩的输出都需要预热
+            if((i & 1) == 1){
+                req.setHeader(ACCEPT_ENCODING, "gzip");
+            }
+
+            Object result = invokeMethod(handler, getMethodRealValue(req, resp, handler, adapter, pathVariables));
+            if(handler.async){
+                if(null == result){
+                    continue;
+                }
+                result = ((CompletionStage<?>) result).toCompletableFuture().get(asyncTimeout, TimeUnit.MILLISECONDS);
+            }
+            applyResult(req, resp, handler, result);
+        }
+    }
+
+    /**
+     * 为参数生成一个能通过绑定的示例值,写入模拟请求或者路径变量中,不从请求中取值的参数什么都不做
+     * 请求体中集合和数组使用空数组,字符串、数字和布尔使用对应的JSON值,其余的当作对象使用空对象
+     */
+    private static void sample(MyArgumentBinder binder, MyInMemoryRequest req, Map<String, String> pathVariables) {
+
+        Class<?> type = binder.getValueType();
+        switch (binder.getSource()) {
+            case REQUEST_PARAM: {
+                String value = sampleValue(type, binder.getConverter());
+                if(null != value){
+                    req.setParameter(binder.getName(), value);
+                }
+                break;
+            }
+            case PATH_VARIABLE: {
+                String value = sampleValue(type, binder.getConverter());
+                if(null != value){
+                    pathVariables.put(binder.getName(), value);
+                }
+                break;
+            }
+            case REQUEST_BODY: {
+                String json;
+                if(type.isArray() || Collection.class.isAssignableFrom(type)){
+                    json = "[]";
+                }else if(CharSequence.class.isAssignableFrom(type)){
+                    json = "\"\"";
+                }else if(type == boolean.class || type == Boolean.class){
+                    json = "false";
+                }else if(type.isPrimitive() || Number.class.isAssignableFrom(type)){
+                    json = "0";
+                }else{
+                    json = "{}";
+                }
+                req.setContentType("application/json;charset=UTF-8");
+                req.setContent(json.getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 找一个能转换为该类型的字符串,枚举取第一个常量,其余的依次尝试数字、布尔和普通字符串
+     * @return 都无法转换时为null
+     */
+    private static String sampleValue(Class<?> type, MyConverter converter) {
+
+        if(type.isEnum()){
+            Object[] constants = type.getEnumConstants();
+            return constants.length == 0 ? null : ((Enum<?>) constants[0]).name();
+        }
+        for (String candidate : SAMPLE_VALUES) {
+            try {
+                converter.convert(candidate);
+                return candidate;
+            } catch (Exception ignored) {
+                //换下一个试
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 初始化处理异步接口的线程池
+     */
+    private void initAsyncExecutor() {
+
+        Properties properties = ApplicationContext.getProperties();
+        int poolSize = Integer.parseInt(properties.getProperty(ASYNC_POOL_SIZE,
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+        asyncTimeout = Long.parseLong(properties.getProperty(ASYNC_TIMEOUT, "30000"));
+
+        final AtomicInteger count = new AtomicInteger();
+        asyncExecutor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "my-spring-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 加载所有的静态页面,比如我们之前的jsp文件,这里我们来自己定义一种文件类型.jspk文件
+     */
+    private void initViewResolvers() throws ServletException {
+
+        //为了避免我们的静态文件被直接访问到,所以静态文件一般是放在WEB-INF文件下
+        //这里我们为了方便获取,放在resources文件下
+        Properties properties = ApplicationContext.getProperties();
+        String viewUrl = properties.getProperty(VIEWS);
+
+        URL url = this.getClass().getClassLoader().getResource(viewUrl);
+        File dir = null == url ? new File(viewUrl) : new File(url.getFile());
+        try {
+            //页面在启动时全部编译好放在内存中,子目录中的页面名为相对路径
+            viewRepository = new MyViewRepository(dir, Boolean.parseBoolean(properties.getProperty(VIEWS_WATCH, "false")));
+        } catch (IOException e) {
+            throw new ServletException("加载页面失败: " + dir, e);
+        }
+    }
+
+    /**
+     * 收集所有@MyControllerAdvice中的异常处理方法,作为所有接口共用的resolver
+     */
+    private void initExceptionResolver() throws ServletException {
+
+        Set<Object> advices = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object bean : ApplicationContext.getIOC().values()) {
+            if(bean.getClass().isAnnotationPresent(MyControllerAdvice.class)){
+                advices.add(bean);
+            }
+        }
+        globalResolver = MyExceptionResolver.create(new ArrayList<>(advices), null);
+    }
+
+    /**
+     * 映射相应的url和它请求的方法
+     * 有组件索引的controller直接使用编译时记录的url,不再反射遍历所有的方法
+     */
+    private void initHandlerMapping() throws ServletException {
+
+        ConcurrentHashMap<String, Object> ioc = ApplicationContext.getIOC();
+        if(ioc.isEmpty()){
+            return;
+        }
+
+        List<MyHandler> handlers = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : ioc.entrySet()) {
+            if(entry.getValue().getClass().isAnnotationPresent(MyController.class)){
+                handlers.addAll(createHandlers(entry.getValue()));
+            }
+        }
+        routes = new Routes(handlers);
+    }
+
+    /**
+     * 为controller中所有@MyRequestMapping方法创建MyHandler
+     * 有组件索引的controller直接使用编译时记录的url,不再反射遍历所有的方法
+     * @param controller
+     * @return
+     */
+    private List<MyHandler> createHandlers(Object controller) throws ServletException {
+
+        List<MyHandler> handlers = new ArrayList<>();
+        //同一个controller的接口共用一个resolver
+        MyExceptionResolver resolver = MyExceptionResolver.create(Collections.singletonList(controller), globalResolver);
+
+        Class<?> clazz = controller.getClass();
+        MyComponentIndex index = ApplicationContext.getComponentIndex();
+        MyComponentIndex.Component component = null == index ? null : index.getComponent(clazz.getName());
+        if(null != component){
+            createHandlers(controller, component, resolver, handlers);
+            return handlers;
+        }
+
+        String url = "";
+        boolean regex = false;
+        if(clazz.isAnnotationPresent(MyRequestMapping.class)){
+            MyRequestMapping requestMapping = clazz.getAnnotation(MyRequestMapping.class);
+            String value = requestMapping.value();
+            url = value;
+            regex = requestMapping.regex();
+        }
+
+        Method[] methods = clazz.getDeclaredMethods();
+        for (Method method : methods) {
+            if(method.isAnnotationPresent(MyRequestMapping.class)){
+                MyRequestMapping myRequestMapping = method.getAnnotation(MyRequestMapping.class);
+                String value = myRequestMapping.value();
+                //path = /test/fruit
+                String path = url + value;
+                handlers.add(createHandler(path, regex || myRequestMapping.regex(), controller, method, resolver));
+            }
+        }
+        return handlers;
+    }
+
+    /**
+     * 根据组件索引映射controller的url
+     * @param controller
+     * @param component
+     * @param resolver
+     * @param handlers
+     */
+    private void createHandlers(Object controller, MyComponentIndex.Component component, MyExceptionResolver resolver,
+                                List<MyHandler> handlers) throws ServletException {
+
+        Class<?> clazz = controller.getClass();
+        for (MyComponentIndex.Route route : component.getRoutes()) {
+            String[] typeNames = route.getParameterTypes();
+            try {
+                Class<?>[] parameterTypes = new Class<?>[typeNames.length];
+                for (int i = 0; i < typeNames.length; i++) {
+                    parameterTypes[i] = MyComponentIndex.resolveType(typeNames[i], clazz.getClassLoader());
+                }
+                Method method = clazz.getDeclaredMethod(route.getMethodName(), parameterTypes);
+                handlers.add(createHandler(route.getPath(), route.isRegex(), controller, method, resolver));
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                throw new ServletException("组件索引与" + clazz.getName() + "不一致,请重新编译", e);
+            }
+        }
+    }
+
+    /**
+     * 运行时注册controller,它的所有@MyRequestMapping方法立即生效,同时以类名首字母小写放入IOC容器并注入依赖
+     * 已经在处理的请求不受影响,之后的请求使用新的路由快照
+     * @param controller
+     * @throws ServletException 方法不能作为接口
+     * @throws IllegalStateException url或者bean的key重复
+     */
+    public void registerController(Object controller) throws ServletException {
+
+        List<MyHandler> added = createHandlers(controller);
+        String key = MyComponentIndex.beanName(controller.getClass().getSimpleName());
+        synchronized (routesLock) {
+            try {
+                Routes next = routes.add(added);
+                ApplicationContext.registerBean(key, controller);
+                publish(next, added);
+            } catch (RuntimeException e) {
+                unregisterMetrics(added);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 运行时注销controller的所有接口,并从IOC容器中移除
+     * @param controller
+     * @return controller没有注册过接口时返回false
+     */
+    public boolean unregisterController(Object controller) {
+
+        synchronized (routesLock) {
+            List<MyHandler> removed = new ArrayList<>();
+            for (MyHandler handler : routes.handlers) {
+                if(handler.controller == controller){
+                    removed.add(handler);
+                }
+            }
+            if(removed.isEmpty()){
+                return false;
+            }
+            routes = routes.remove(removed);
+            ApplicationContext.unregisterBean(controller);
+            unregisterMetrics(removed);
+            return true;
+        }
+    }
+
+    /**
+     * 运行时把一个方法注册为接口,比如为某个租户单独添加的接口
+     * @param path url
+     * @param regex 是否按正则匹配
+     * @param controller method方法所在的对象,不会放入IOC容器
+     * @param method
+     * @throws ServletException 方法不能作为接口
+     * @throws IllegalStateException url重复
+     */
+    public void registerRoute(String path, boolean regex, Object controller, Method method) throws ServletException {
+
+        MyExceptionResolver resolver = MyExceptionResolver.create(Collections.singletonList(controller), globalResolver);
+        List<MyHandler> added = Collections.singletonList(createHandler(path, regex, controller, method, resolver));
+        synchronized (routesLock) {
+            try {
+                publish(routes.add(added), added);
+            } catch (RuntimeException e) {
+                unregisterMetrics(added);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 运行时注销一个url
+     * @param path 注册时的url
+     * @return url不存在时返回false
+     */
+    public boolean unregisterRoute(String path) {
+
+        synchronized (routesLock) {
+            for (MyHandler handler : routes.handlers) {
+                if(handler.url.equals(path)){
+                    List<MyHandler> removed = Collections.singletonList(handler);
+                    routes = routes.remove(removed);
+                    unregisterMetrics(removed);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 发布新的路由快照,新接口的拦截器在发布之前确定好
+     */
+    private void publish(Routes next, List<MyHandler> added) {
+
+        for (MyHandler handler : added) {
+            applyInterceptors(handler);
+        }
+        routes = next;
+    }
+
+    private void unregisterMetrics(List<MyHandler> removed) {
+
+        if(null == metrics){
+            return;
+        }
+        for (MyHandler handler : removed) {
+            metrics.unregister(handler.metrics);
+        }
+    }
+
+    /**
+     * 创建MyHandler,同时生成该方法的调用器和参数绑定器
+     */
+    private MyHandler createHandler(String path, boolean regex, Object controller, Method method,
+                                    MyExceptionResolver resolver) throws ServletException {
+
+        try {
+            MyHandler handler = new MyHandler(path, regex, controller, method);
+            handler.exceptionResolver = resolver;
+            return handler;
+        } catch (IllegalAccessException e) {
+            throw new ServletException("无法访问接口方法: " + method, e);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        doPost(req, resp);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+
+        try {
+            doDispatcher(req,resp);
+        } catch (Exception e) {
+            if(null != metrics){
+                metrics.recordError(null);
+            }
+            processException(req, resp, globalResolver, e);
+        }
+    }
+
+    /**
+     * 处理接口执行过程中抛出的异常
+     * 有对应的@MyExceptionHandler方法时交给它处理,否则只输出状态码和简短的信息,不输出堆栈
+     * 接口可能已经通过getOutputStream或者压缩输出了一部分响应,响应还没有提交时先清空,包括状态码和header
+     * @param req
+     * @param resp
+     * @param resolver 接口所在controller的resolver,没有对应的接口时为全局的resolver
+     * @param e
+     */
+    private void processException(HttpServletRequest req, HttpServletResponse resp, MyExceptionResolver resolver, Throwable e) throws IOException {
+
+        MyExceptionResolver.Handler handler = null == resolver ? null : resolver.resolve(e.getClass());
+        if(null != handler){
+            try {
+                if(!resp.isCommitted()){
+                    resp.reset();
+                }
+                resp.setStatus(handler.getStatus(e));
+                writeResult(req, resp, handler.isResponseBody(), handler.invoke(req, resp, e));
+                return;
+            } catch (Exception handlerError) {
+                //处理方法本身出错时按默认的方式输出原来的异常
+                logError(handlerError);
+            }
+        }
+
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        String message = null;
+        if(e instanceof MyHttpException){
+            status = ((MyHttpException) e).getStatus();
+            message = e.getMessage();
+        }else{
+            logError(e);
+        }
+        if(resp.isCommitted()){
+            return;
+        }
+        resp.reset();
+        resp.setStatus(status);
+        resp.setContentType(CONTENT_TYPE_TEXT);
+        String text = null == message ? status + " " + MyHttpException.reasonPhrase(status)
+                : status + " " + MyHttpException.reasonPhrase(status) + ", Msg:" + message;
+        resp.getOutputStream().write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 没有处理的异常每种只打印一次堆栈,同一个错误大量出现时不会因为打印日志拖慢请求
+     */
+    private void logError(Throwable e) {
+
+        if(null == loggedErrors.putIfAbsent(e.getClass(), Boolean.TRUE)){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 执行请求的接口
+     * @param req
+     * @param resp
+     */
+    private void doDispatcher(HttpServletRequest req, HttpServletResponse resp) throws Exception{
+
+        long start = null == metrics && !concurrencyAdaptive ? 0 : System.nanoTime();
+
+        //获取请求url对应的MyHandler
+        MyRouter.Match<MyHandler> match = getHandler(req);
+        if(null == match){
+            if(null != metrics && req.getRequestURI().equals(metricsPath)){
+                processMetrics(req, resp);
+                return;
+            }
+            if(null != batchPath && req.getRequestURI().equals(batchPath)){
+                processBatch(req, resp);
+                return;
+            }
+            //没有对应的接口时查找静态资源
+            if(null != resourceHandler && resourceHandler.handle(req, resp)){
+                return;
+            }
+            if(null != metrics){
+                metrics.recordNotFound();
+            }
+            processException(req, resp, globalResolver, NOT_FOUND);
+            return;
+        }
+        MyHandler handler = match.getHandler();
+        long time = mark(null, MyMetrics.Phase.ROUTE, start);
+
+        //获取存储方法参数对应关系的MyAdapter
+        MyAdapter adapter = getAdapter(handler);
+        if(null == adapter){
+            return;
+        }
 
-        //映射相应的url和它请求的方法
-        initHandlerMapping();
+        //超过并发数上限时直接拒绝,不让请求排队等待
+        if(!acquirePermit(handler)){
+            rejectRequest(resp, handler);
+            return;
+        }
+
+        //异步接口的许可在CompletionStage完成后才归还
+        boolean asyncStarted = false;
+        //preHandle返回了true的拦截器个数,只有这些拦截器需要执行afterCompletion
+        int applied = 0;
+        Exception failure = null;
+        try {
+            MyHandlerInterceptor[] interceptors = handler.interceptors;
+            for (; applied < interceptors.length; applied++) {
+                if(!interceptors[applied].preHandle(req, resp, handler.method)){
+                    return;
+                }
+            }
 
-        //匹配请求接口方法的参数
-        initAdapterMapping();
+            //获取url请求的接口参数的值的数组,作为后续反射执行该方法时的传参
+            Object[] paramValues = getMethodRealValue(req, resp, handler, adapter, match.getPathVariables());
+            time = mark(handler, MyMetrics.Phase.BIND, time);
 
-        //加载所有的静态页面,比如我们之前的jsp文件,这里我们来自己定义一种文件类型.jspk文件
-        initViewResolvers();
+            //执行方法
+            Object result = invokeMethod(handler, paramValues);
+            time = mark(handler, MyMetrics.Phase.INVOKE, time);
 
-        System.out.println("MySpring 已经初始化完成......");
+            //返回CompletableFuture的接口,等它完成后再处理响应,不需要一直占用容器的线程
+            if(handler.async){
+                asyncStarted = processAsyncResult(req, resp, handler, (CompletionStage<?>) result, start);
+                return;
+            }
 
+            //如果MyModelAndView不为null,则跳转至要打开的页面,并解析后端传给前端的数据
+            postHandle(req, resp, handler, result);
+            applyResult(req, resp, handler, result);
+            mark(handler, MyMetrics.Phase.RENDER, time);
+            mark(handler, MyMetrics.Phase.TOTAL, start);
+        } catch (Exception e) {
+            failure = e;
+            if(null != metrics){
+                metrics.recordError(handler.metrics);
+            }
+            processException(req, resp, handler.exceptionResolver, e);
+        } finally {
+            if(!asyncStarted){
+                afterCompletion(req, resp, handler, applied, failure);
+                releasePermit(handler, start);
+            }
+        }
     }
 
     /**
-     * 加载所有的静态页面,比如我们之前的jsp文件,这里我们来自己定义一种文件类型.jspk文件
+     * 按倒序执行拦截器的postHandle
      */
-    private void initViewResolvers() {
+    private void postHandle(HttpServletRequest req, HttpServletResponse resp, MyHandler handler, Object result) throws Exception {
 
-        //为了避免我们的静态文件被直接访问到,所以静态文件一般是放在WEB-INF文件下
-        //这里我们为了方便获取,放在resources文件下
-        String viewUrl = ApplicationContext.getProperties().getProperty(VIEWS);
+        MyHandlerInterceptor[] interceptors = handler.interceptors;
+        for (int i = interceptors.length - 1; i >= 0; i--) {
+            interceptors[i].postHandle(req, resp, handler.method, result);
+        }
+    }
 
-        URL url = this.getClass().getClassLoader().getResource(viewUrl);
-        File dir = new File(url.getFile());
-        for (File file : dir.listFiles()) {
-            viewResolvers.add(new ViewResolver(file.getName(), file));
+    /**
+     * 按倒序执行拦截器的afterCompletion,拦截器抛出的异常不影响其他拦截器
+     * @param applied preHandle返回了true的拦截器个数
+     */
+    private void afterCompletion(HttpServletRequest req, HttpServletResponse resp, MyHandler handler, int applied, Exception ex) {
+
+        MyHandlerInterceptor[] interceptors = handler.interceptors;
+        for (int i = applied - 1; i >= 0; i--) {
+            try {
+                interceptors[i].afterCompletion(req, resp, handler.method, ex);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
     /**
-     * 匹配请求接口方法的参数
+     * 获取全局和接口的并发许可,都获取成功才能处理请求
+     * @param handler
+     * @return
      */
-    private void initAdapterMapping() {
+    private boolean acquirePermit(MyHandler handler) {
 
-        if(handlerMapping.isEmpty()){
-            return;
+        if(null != globalLimit && !globalLimit.tryAcquire()){
+            return false;
+        }
+        if(null != handler.limit && !handler.limit.tryAcquire()){
+            if(null != globalLimit){
+                globalLimit.cancel();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 归还并发许可
+     * @param handler
+     * @param start 请求开始的时间
+     */
+    private void releasePermit(MyHandler handler, long start) {
+
+        if(null != handler.limit){
+            handler.limit.release(start);
+        }
+        if(null != globalLimit){
+            globalLimit.release(start);
+        }
+    }
+
+    /**
+     * 拒绝超过并发数上限的请求
+     */
+    private void rejectRequest(HttpServletResponse resp, MyHandler handler) throws IOException {
+
+        if(null != metrics){
+            metrics.recordRejected(handler.metrics);
+        }
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", retryAfter);
+        resp.getWriter().write("503 Service Unavailable, Msg:too many concurrent requests");
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     * @param handler 还没有找到handler时为null
+     * @param phase
+     * @param start 该阶段开始的时间
+     * @return 当前时间,即下一个阶段开始的时间。关闭统计时直接返回0
+     */
+    private long mark(MyHandler handler, MyMetrics.Phase phase, long start) {
+
+        if(null == metrics){
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.record(null == handler ? null : handler.metrics, phase, now - start);
+        return now;
+    }
+
+    /**
+     * 输出请求统计,默认为文本,format=json时输出JSON
+     * @param req
+     * @param resp
+     */
+    private void processMetrics(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+
+        if("json".equals(req.getParameter("format"))){
+            resp.setContentType(CONTENT_TYPE_JSON);
+            metrics.writeJson(resp.getWriter());
+        }else{
+            resp.setContentType(CONTENT_TYPE_TEXT);
+            metrics.writeText(resp.getWriter());
         }
+    }
+
+    /**
+     * 批量请求,请求体为子请求的数组,比如[{"path":"/test/fruit","params":{"name":"apple","count":"3"}}]
+     * 每个子请求都按普通请求分发,在batchExecutor中并行执行,结果按顺序写成一个JSON数组
+     * 子请求的结果为{"path":...,"status":...,"body":...},JSON响应直接嵌入,其余的作为字符串
+     * @param req
+     * @param resp
+     */
+    private void processBatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
 
-        for (MyHandler handler : handlerMapping) {
-            //为了方便,Controller类中的方法的参数前都添加了@MyRequestParam注解且注解中都定义了参数名,所以这里直接使用getParameterAnnotations来获取参数前的注解
-            //通过注解获取参数的名称
-            //因为参数前可以添加多个注解,所以getParameterAnnotations获取的是一个二维数组
-            Annotation[][] parameterAnnotations = handler.method.getParameterAnnotations();
+        if(!"POST".equals(req.getMethod())){
+            resp.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            resp.getWriter().write("405 Method Not Allowed, Msg:batch request must be POST");
+            return;
+        }
 
-            //存储方法参数中的参数名和参数位置  key为参数名 value为该参数是该方法中的第几个参数
-            Map<String, Integer> paramMapping = new HashMap<>();
+        BatchRequest[] batch;
+        try {
+            MyJsonReader reader = new MyJsonReader(req.getInputStream());
+            batch = (BatchRequest[]) BATCH_READER.read(reader);
+            reader.peek();
+        } catch (MyJsonException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("400 Bad Request, Msg:" + e.getMessage());
+            return;
+        }
+        if(null == batch || batch.length > batchMaxSize){
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("400 Bad Request, Msg:batch size must be 0~" + batchMaxSize);
+            return;
+        }
 
-            for (int i = 0; i < parameterAnnotations.length; i++) {
-                for (Annotation annotation : parameterAnnotations[i]) {
-                    Class<? extends Annotation> clazz = annotation.annotationType();
-                    if(clazz == MyRequestParam.class){
-                        String paramName = ((MyRequestParam) annotation).value();
-                        paramMapping.put(paramName, i);
+        //所有子请求共用一个截止时间,线程池满了的子请求直接记为null
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(asyncTimeout);
+        List<Future<MyInMemoryResponse>> futures = new ArrayList<>(batch.length);
+        for (BatchRequest item : batch) {
+            final String error = null == item ? "batch item must be an object" : null;
+            final MyInMemoryRequest subRequest = null == item ? null : createSubRequest(req, item);
+            Callable<MyInMemoryResponse> task = new Callable<MyInMemoryResponse>() {
+                @Override
+                public MyInMemoryResponse call() throws Exception {
+                    MyInMemoryResponse subResponse = new MyInMemoryResponse();
+                    //结果统一嵌入UTF-8的JSON中,没有设置编码的文本也按UTF-8输出
+                    subResponse.setCharacterEncoding("UTF-8");
+                    if(null == subRequest){
+                        subResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        subResponse.getWriter().write("400 Bad Request, Msg:" + (null == error ? "invalid path" : error));
+                    }else{
+                        //和普通请求一样,异常交给exceptionResolver处理,不会把异常信息带到结果中
+                        doPost(subRequest, subResponse);
                     }
+                    return subResponse;
                 }
+            };
+            try {
+                futures.add(batchExecutor.submit(task));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
             }
-
-            adapterMapping.put(handler, new MyAdapter(paramMapping));
         }
 
+        resp.setContentType(CONTENT_TYPE_JSON);
+        try (MyJsonWriter writer = new MyJsonWriter(resp.getOutputStream())) {
+            writer.beginArray();
+            for (int i = 0; i < batch.length; i++) {
+                writer.beginObject();
+                writer.name("path").value(null == batch[i] ? null : batch[i].path);
+                writeBatchResult(writer, futures.get(i), deadline);
+                writer.endObject();
+            }
+            writer.endArray();
+        }
     }
 
     /**
-     * 映射相应的url和它请求的方法
+     * 根据子请求创建请求对象,header沿用外层请求的,但不压缩
+     * @return path无效时为null
      */
-    private void initHandlerMapping() {
+    private MyInMemoryRequest createSubRequest(HttpServletRequest req, BatchRequest item) throws IOException {
 
-        ConcurrentHashMap<String, Object> ioc = ApplicationContext.getIOC();
-        if(ioc.isEmpty()){
-            return;
+        String path = item.path;
+        if(null == path || !path.startsWith("/") || path.startsWith(batchPath)){
+            return null;
         }
 
-        for (Map.Entry<String, Object> entry : ioc.entrySet()) {
-            Class<?> clazz = entry.getValue().getClass();
-            if(!clazz.isAnnotationPresent(MyController.class)){
+        MyInMemoryRequest subRequest = new MyInMemoryRequest(null == item.body ? "GET" : "POST", path);
+        Enumeration<String> names = req.getHeaderNames();
+        while (null != names && names.hasMoreElements()) {
+            String name = names.nextElement();
+            if("Accept-Encoding".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)
+                    || "Content-Type".equalsIgnoreCase(name)){
                 continue;
             }
-            String url = "";
-            if(clazz.isAnnotationPresent(MyRequestMapping.class)){
-                MyRequestMapping requestMapping = clazz.getAnnotation(MyRequestMapping.class);
-                String value = requestMapping.value();
-                url = value;
-            }
-
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method method : methods) {
-                if(method.isAnnotationPresent(MyRequestMapping.class)){
-                    MyRequestMapping myRequestMapping = method.getAnnotation(MyRequestMapping.class);
-                    String value = myRequestMapping.value();
-                    //regx = /test/fruit
-                    String regx = url + value;
-                    Pattern pattern = Pattern.compile(regx);
-                    handlerMapping.add(new MyHandler(pattern,entry.getValue(),method));
-                }
+            Enumeration<String> values = req.getHeaders(name);
+            while (values.hasMoreElements()) {
+                subRequest.addHeader(name, values.nextElement());
             }
-
         }
 
-    }
+        //path中也可以带参数,比如/test/fruit?name=apple
+        int query = path.indexOf('?');
+        if(query >= 0){
+            subRequest.setRequestURI(path.substring(0, query));
+            subRequest.setQueryString(path.substring(query + 1));
+            for (String pair : path.substring(query + 1).split("&")) {
+                if(pair.isEmpty()){
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                try {
+                    subRequest.addParameter(URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8"),
+                            eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        if(null != item.params){
+            for (Map.Entry<String, String> entry : item.params.entrySet()) {
+                subRequest.addParameter(entry.getKey(), entry.getValue());
+            }
+        }
 
-    @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        doPost(req, resp);
+        //body重新序列化后作为@MyRequestBody的请求体
+        if(null != item.body){
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (MyJsonWriter writer = new MyJsonWriter(out)) {
+                MyJsonMapper.write(writer, item.body);
+            }
+            subRequest.setContentType(CONTENT_TYPE_JSON);
+            subRequest.setContent(out.toByteArray());
+        }
+        return subRequest;
     }
 
-    @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    /**
+     * 写入一个子请求的状态码和响应
+     * @param future 被线程池拒绝的子请求为null
+     * @param deadline 整个批量请求的截止时间,System.nanoTime()
+     */
+    private void writeBatchResult(MyJsonWriter writer, Future<MyInMemoryResponse> future, long deadline) throws IOException {
 
+        if(null == future){
+            writer.name("status").value(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            writer.name("body").value("503 Service Unavailable, Msg:too many batch requests");
+            return;
+        }
+        MyInMemoryResponse subResponse;
         try {
-            doDispatcher(req,resp);
-        } catch (Exception e) {
-            resp.getWriter().write("500 exception, Msg:" + Arrays.toString(e.getStackTrace()));
+            subResponse = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException | InterruptedException e) {
+            if(e instanceof InterruptedException){
+                Thread.currentThread().interrupt();
+            }
+            future.cancel(true);
+            writer.name("status").value(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            writer.name("body").value("503 Service Unavailable, Msg:request timeout");
+            return;
+        } catch (ExecutionException e) {
+            //Exception已经在子请求中处理了,这里只会是Error
+            logError(e.getCause());
+            writer.name("status").value(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            writer.name("body").value("500 " + MyHttpException.reasonPhrase(HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+            return;
+        }
+
+        writer.name("status").value(subResponse.getStatus());
+        byte[] body = subResponse.getContentAsByteArray();
+        String contentType = subResponse.getContentType();
+        writer.name("body");
+        if(body.length == 0){
+            writer.nullValue();
+        }else if(null != contentType && contentType.startsWith("application/json")){
+            writer.rawValue(body, 0, body.length);
+        }else{
+            writer.value(subResponse.getContentAsString());
         }
     }
 
     /**
-     * 执行请求的接口
+     * 处理异步接口的结果
+     * 开启AsyncContext后容器的线程直接返回,CompletionStage完成后在asyncExecutor中渲染页面并结束请求
      * @param req
      * @param resp
+     * @param handler
+     * @param stage
+     * @param start 请求开始的时间,用于统计整个请求的耗时
+     * @return 是否开启了AsyncContext,开启时并发许可在CompletionStage完成后归还
      */
-    private void doDispatcher(HttpServletRequest req, HttpServletResponse resp) throws Exception{
+    private boolean processAsyncResult(HttpServletRequest req, final HttpServletResponse resp, final MyHandler handler,
+                                    CompletionStage<?> stage, final long start) throws Exception {
 
-        //获取请求url对应的MyHandler
-        MyHandler handler = getHandler(req);
-        if(null == handler){
-            resp.getWriter().write("404 Not Found...");
-            return;
+        if(null == stage){
+            return false;
         }
 
-        //获取存储方法参数对应关系的MyAdapter
-        MyAdapter adapter = getAdapter(handler);
-        if(null == adapter){
-            return;
+        //容器不支持异步时(比如内嵌服务器和批量请求的子请求),只能同步等待结果,最多等asyncTimeout
+        if(!req.isAsyncSupported()){
+            try {
+                Object result;
+                try {
+                    result = stage.toCompletableFuture().get(asyncTimeout, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.getWriter().write("503 Service Unavailable, Msg:request timeout");
+                    return false;
+                }
+                long time = null == metrics ? 0 : System.nanoTime();
+                postHandle(req, resp, handler, result);
+                applyResult(req, resp, handler, result);
+                mark(handler, MyMetrics.Phase.RENDER, time);
+                mark(handler, MyMetrics.Phase.TOTAL, start);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+            return false;
         }
 
-        //获取url请求的接口参数的值的数组,作为后续反射执行该方法时的传参
-        Object[] paramValues = getMethodRealValue(req, resp, handler, adapter);
+        final AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(asyncTimeout);
+
+        //超时和正常完成只能有一个去写响应
+        final AtomicBoolean finished = new AtomicBoolean();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if(finished.compareAndSet(false, true)){
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.getWriter().write("503 Service Unavailable, Msg:request timeout");
+                    asyncContext.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
 
-        //反射执行方法
-        MyModelAndView mv = invokeMethod(handler, paramValues);
+            @Override
+            public void onError(AsyncEvent event) {
+            }
 
-        //如果MyModelAndView不为null,则跳转至要打开的页面,并解析后端传给前端的数据
-        applyDefaultViewName(resp, mv);
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        stage.whenCompleteAsync((result, ex) -> {
+            //超时后接口仍然在执行,许可要等它真正完成才归还
+            releasePermit(handler, start);
+            Exception failure = null == ex ? null : unwrap(ex);
+            if(!finished.compareAndSet(false, true)){
+                afterCompletion(req, resp, handler, handler.interceptors.length, failure);
+                return;
+            }
+            try {
+                if(null != failure){
+                    if(null != metrics){
+                        metrics.recordError(handler.metrics);
+                    }
+                    processException(req, resp, handler.exceptionResolver, failure);
+                }else{
+                    long time = null == metrics ? 0 : System.nanoTime();
+                    postHandle(req, resp, handler, result);
+                    applyResult(req, resp, handler, result);
+                    mark(handler, MyMetrics.Phase.RENDER, time);
+                    mark(handler, MyMetrics.Phase.TOTAL, start);
+                }
+            } catch (Exception e) {
+                failure = e;
+                if(null != metrics){
+                    metrics.recordError(handler.metrics);
+                }
+                try {
+                    processException(req, resp, handler.exceptionResolver, e);
+                } catch (IOException ignored) {
+                    //客户端已经断开
+                }
+            } finally {
+                afterCompletion(req, resp, handler, handler.interceptors.length, failure);
+                asyncContext.complete();
+            }
+        }, asyncExecutor);
+        return true;
     }
 
     /**
-     * 解析并展示前端页面
+     * 处理方法的返回值,@MyResponseBody的方法写成JSON,其余的按MyModelAndView解析页面
+     * @param req
      * @param resp
-     * @param mv
+     * @param handler
+     * @param result 方法的返回值,异步接口为CompletionStage的结果
      */
-    private void applyDefaultViewName(HttpServletResponse resp, MyModelAndView mv) throws Exception {
+    private void applyResult(HttpServletRequest req, HttpServletResponse resp, MyHandler handler, Object result) throws Exception {
+        writeResult(req, resp, handler.responseBody, result);
+    }
+
+    /**
+     * 输出方法的返回值,接口方法和异常处理方法共用
+     * @param req
+     * @param resp
+     * @param responseBody 是否写成JSON
+     * @param result
+     */
+    private void writeResult(HttpServletRequest req, HttpServletResponse resp, boolean responseBody, Object result) throws Exception {
 
-        if(null == mv || viewResolvers.isEmpty()){
+        if(responseBody){
+            resp.setContentType(CONTENT_TYPE_JSON);
+            if(null == result){
+                return;
+            }
+            MyCompression.Encoding encoding = negotiateEncoding(req, resp);
+            if(null == encoding){
+                //边序列化边写入响应流,不会先生成完整的JSON字符串
+                try (MyJsonWriter writer = new MyJsonWriter(resp.getOutputStream())) {
+                    MyJsonMapper.write(writer, result);
+                }
+                return;
+            }
+            //和页面一样,小于compressionMinSize的JSON不压缩
+            try (OutputStream out = new ThresholdOutputStream(resp, encoding, compressionMinSize);
+                 MyJsonWriter writer = new MyJsonWriter(out)) {
+                MyJsonMapper.write(writer, result);
+            }
             return;
         }
+        applyDefaultViewName(req, resp, result instanceof MyModelAndView ? (MyModelAndView) result : null);
+    }
+
+    /**
+     * 根据请求的Accept-Encoding选择压缩方式,开启压缩时响应都需要带上Vary,避免缓存把压缩后的内容返回给不支持的客户端
+     * @param req
+     * @param resp
+     * @return 不压缩时为null
+     */
+    private MyCompression.Encoding negotiateEncoding(HttpServletRequest req, HttpServletResponse resp) {
 
-        for (ViewResolver viewResolver : viewResolvers) {
+        if(!compression){
+            return null;
+        }
+        resp.addHeader("Vary", ACCEPT_ENCODING);
+        return MyCompression.negotiate(req.getHeader(ACCEPT_ENCODING));
+    }
 
-            if(mv.getViewName().equals(viewResolver.getViewName())){
+    /**
+     * 取出CompletableFuture包装的真正异常
+     */
+    private Exception unwrap(Throwable e) {
 
-                String str = parseView(mv, viewResolver);
-                if(null != str && !str.equals("")){
-                    resp.getWriter().write(str);
-                    break;
-                }
-            }
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && null != e.getCause()) {
+            e = e.getCause();
         }
+        return e instanceof Exception ? (Exception) e : new ExecutionException(e);
     }
 
     /**
-     * 页面模板,模板框架很复杂,但是原理都是一样的,通过正则表达式来解析
+     * 解析并展示前端页面,客户端支持时压缩后输出
+     * @param req
+     * @param resp
      * @param mv
-     * @return
      */
-    private String parseView(MyModelAndView mv, ViewResolver viewResolver) throws Exception {
+    private void applyDefaultViewName(HttpServletRequest req, HttpServletResponse resp, MyModelAndView mv) throws Exception {
 
-        //我们知道jsp中通过${xxx}来获取后端传过来的数据
-        //但是这里我们是自己定义的页面格式.jspk。我们通过@{xxx}来获取后端传来的数据
-        StringBuffer sb = new StringBuffer();
-        RandomAccessFile raf = new RandomAccessFile(viewResolver.getViewFile(), "r");
-        String line = null;
-        try {
-            while (null != (line = raf.readLine())){
-                Matcher matcher = matcher(line);
-                while (matcher.find()){
-                    //这里注意使用了 i <= 而不是 i < 。需要空闲的时候在看看正则表达式
-                    for (int i = 0; i <= matcher.groupCount(); i++) {
-                        // paramName = @{xxx}
-                        String paramName = matcher.group(i);
-                        //对于@{xxx}。因为{和}是正则语法中的一部分,所以这里我们需要转义。所以我要取出xxx按正则表达式拼接在一起
-                        paramName = paramName.substring(2, paramName.length());//去掉@{
-                        paramName = paramName.substring(0, paramName.length() - 1);//去掉}
-
-                        Object paramValue = mv.getModel().get(paramName);
-                        line = line.replaceAll("@\\{" + paramName + "\\}", paramValue.toString());
-                    }
+        if(null == mv || null == mv.getViewName()){
+            return;
+        }
+
+        MyTemplate template = viewRepository.get(mv.getViewName());
+        if(null == template){
+            return;
+        }
+        resp.setContentType(CONTENT_TYPE_HTML);
+        MyCompression.Encoding encoding = negotiateEncoding(req, resp);
+
+        //没有占位符的页面长度是固定的,直接设置Content-Length。其余的页面关闭缓冲池时由容器根据输出的大小决定是否使用chunked编码
+        if(template.isStatic()){
+            //没有占位符的页面只压缩一次,之后直接输出缓存的压缩结果
+            if(null != encoding && template.getStaticLength() >= compressionMinSize){
+                byte[] bytes = template.getCompressed(encoding);
+                resp.setHeader(CONTENT_ENCODING, encoding.getToken());
+                resp.setContentLength(bytes.length);
+                resp.getOutputStream().write(bytes);
+                return;
+            }
+            resp.setContentLength(template.getStaticLength());
+            parseView(mv, template, resp.getOutputStream());
+            return;
+        }
+
+        if(null != bufferPool){
+            //先渲染到池化的缓冲区,知道了页面大小就可以设置Content-Length,并且小页面不再压缩
+            try (MyBufferOutputStream buffer = new MyBufferOutputStream(bufferPool)) {
+                template.writeTo(mv.getModel(), buffer);
+                if(null == encoding || buffer.size() < compressionMinSize){
+                    resp.setContentLength(buffer.size());
+                    buffer.writeTo(resp.getOutputStream());
+                    return;
+                }
+                resp.setHeader(CONTENT_ENCODING, encoding.getToken());
+                try (OutputStream out = MyCompression.wrap(resp.getOutputStream(), encoding)) {
+                    buffer.writeTo(out);
                 }
-                sb.append(line);
             }
-        } finally {
-            raf.close();
+            return;
         }
 
-        return sb.toString();
+        if(null == encoding){
+            parseView(mv, template, resp.getOutputStream());
+            return;
+        }
+        resp.setHeader(CONTENT_ENCODING, encoding.getToken());
+        try (OutputStream out = MyCompression.wrap(resp.getOutputStream(), encoding)) {
+            parseView(mv, template, out);
+        }
     }
 
     /**
-     * 解析页面的正则
-     * @param line
-     * @return
+     * 页面模板,模板框架很复杂,但是原理都是一样的
+     * 页面文件在启动时编译成MyTemplate并保存在MyViewRepository中,请求时直接用model渲染
+     * 渲染的结果直接写入响应的输出流,不再先拼接成完整的字符串
+     * @param mv
+     * @param template
+     * @param out
      */
-    private Matcher matcher(String line) {
-        //为了简单,line中的@{xxx}必须都是完整的
-        Pattern pattern = Pattern.compile("@\\{[^{]*\\}", Pattern.CASE_INSENSITIVE);//CASE_INSENSITIVE是忽略大小写
-        Matcher matcher = pattern.matcher(line);
-        return matcher;
+    private void parseView(MyModelAndView mv, MyTemplate template, OutputStream out) throws Exception {
+
+        //我们知道jsp中通过${xxx}来获取后端传过来的数据
+        //但是这里我们是自己定义的页面格式.jspk。我们通过@{xxx}来获取后端传来的数据
+        template.writeTo(mv.getModel(), out);
     }
 
     /**
-     * 执行方法,返回 ModelAndView
+     * 执行方法,返回方法的返回值
+     * 方法通过初始化时生成的MyInvoker直接调用,返回值类型在初始化时已经判断好
      * @param handler
      * @param paramValues
      * @return
      * @throws Exception
      */
-    private MyModelAndView invokeMethod(MyHandler handler, Object[] paramValues) throws Exception {
+    private Object invokeMethod(MyHandler handler, Object[] paramValues) throws Exception {
 
-        Object obj = handler.method.invoke(handler.controller, paramValues);
-
-        boolean bool = handler.method.getReturnType() == MyModelAndView.class;
-        if(bool){
-            return (MyModelAndView) obj;
-        }
-        return null;
+        return handler.invoker.invoke(paramValues);
     }
 
 
     /**
      * 获取url请求的接口参数的值的数组,作为后续反射执行该方法时的传参
+     * 按方法参数的顺序依次使用初始化时生成的绑定器取值
      * @param req
      * @param resp
      * @param handler
      * @param adapter
+     * @param pathVariables url中的路径变量
      * @return
      */
-    private Object[] getMethodRealValue(HttpServletRequest req, HttpServletResponse resp, MyHandler handler, MyAdapter adapter) {
+    private Object[] getMethodRealValue(HttpServletRequest req, HttpServletResponse resp, MyHandler handler, MyAdapter adapter, Map<String, String> pathVariables) throws Exception {
 
-        //获取参数的类型是String还是Integer还是....
-        Class<?>[] parameterTypes = handler.method.getParameterTypes();
+        MyArgumentBinder[] binders = adapter.binders;
 
         //存储前端传来的参数的真实值
-        Object[] paramValues = new Object[parameterTypes.length];
-
-        //前端传来的参数的Map集合,因为参数可能是数组,所以用数组作为value
-        Map<String, String[]> parameterMap = req.getParameterMap();
-        for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
-            //value = [apple, orange]
-            String value = Arrays.toString(entry.getValue());
-            //paramValue = apple,orange
-            String paramValue = value.replaceAll("\\[|\\]","").replaceAll(",\\s", ",");
-
-            Map<String, Integer> paramMapping = adapter.paramMapping;
-            Integer index = adapter.paramMapping.get(entry.getKey());
-
-            paramValues[index] = castValue(paramValue, parameterTypes[index]);
-
+        Object[] paramValues = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            paramValues[i] = binders[i].bind(req, resp, pathVariables);
         }
 
         return paramValues;
 
     }
 
-    /**
-     * 根据参数实际类型进行转换
-     * @param value
-     * @param parameterType
-     * @return
-     */
-    private Object castValue(String value, Class<?> parameterType) {
-
-        if(parameterType == String.class){
-            return String.valueOf(value);
-        }else if(parameterType == Integer.class){
-            return Integer.valueOf(value);
-        }
-        return null;
-    }
-
     /**
      * 获取方法的参数的对应关系
      * @param handler
      */
     private MyAdapter getAdapter(MyHandler handler) {
 
-        return adapterMapping.get(handler);
+        return handler.adapter;
     }
 
     /**
-     * 获取请求url对应的handler
+     * 获取请求url对应的handler及url中的路径变量
      * @param req
      */
-    private MyHandler getHandler(HttpServletRequest req) {
+    private MyRouter.Match<MyHandler> getHandler(HttpServletRequest req) {
 
-        if(handlerMapping.isEmpty()){
+        //只读一次快照,整个查找过程使用同一个版本的路由
+        Routes routes = this.routes;
+        if(routes.handlers.isEmpty()){
             return null;
         }
 
         String url = req.getRequestURI();
-        for (MyHandler handler : handlerMapping) {
-            Matcher matcher = handler.pattern.matcher(url);
-            if(matcher.matches()){
-                return handler;
+        return routes.router.match(url);
+    }
+
+    /**
+     * 路由快照,创建之后不再修改,请求线程通过volatile的routes读取,不需要加锁
+     * 注册或注销接口时在routesLock中复制出新的快照再整体替换
+     */
+    private static class Routes {
+
+        private final List<MyHandler> handlers;//所有的接口
+
+        private final MyRouter<MyHandler> router;//由handlers构建的url路由
+
+        /**
+         * @param handlers
+         * @throws IllegalStateException url重复
+         */
+        Routes(List<MyHandler> handlers) {
+
+            this.handlers = Collections.unmodifiableList(new ArrayList<>(handlers));
+            this.router = new MyRouter<>();
+            for (MyHandler handler : handlers) {
+                //只有显式声明为正则的url才按正则匹配,其余的都放入前缀树
+                if(handler.regex){
+                    router.addRegexRoute(handler.url, handler);
+                }else{
+                    router.addRoute(handler.url, handler);
+                }
             }
         }
 
-        return null;
+        Routes add(List<MyHandler> added) {
+
+            List<MyHandler> next = new ArrayList<>(handlers);
+            next.addAll(added);
+            return new Routes(next);
+        }
+
+        Routes remove(List<MyHandler> removed) {
+
+            List<MyHandler> next = new ArrayList<>(handlers);
+            next.removeAll(removed);
+            return new Routes(next);
+        }
     }
 
     /**
-     * handlerMapping容器,存储url和method的对应关系
+     * 一个接口,存储url和method的对应关系
      */
     private class MyHandler {
 
-        private Pattern pattern;//url的正则
+        private String url;//映射的url
+
+        private boolean regex;//url是否按正则匹配
 
         private Object controller;//method方法所在的对象
 
         private Method method;//method方法
 
-        public MyHandler(Pattern pattern, Object controller, Method method) {
-            this.pattern = pattern;
+        private MyInvoker invoker;//method方法的调用器
+
+        private boolean async;//方法的返回值是否是CompletableFuture等异步结果
+
+        private boolean responseBody;//方法的返回值是否写成JSON
+
+        private MyMetrics.HandlerMetrics metrics;//该url的请求统计,关闭统计时为null
+
+        private MyConcurrencyLimit limit;//该url的并发数限制,不限制时为null
+
+        private MyHandlerInterceptor[] interceptors = NO_INTERCEPTORS;//该url使用的拦截器,初始化时确定好
+
+        private MyExceptionResolver exceptionResolver;//该url使用的异常处理方法,没有时为null
+
+        private MyAdapter adapter;//方法参数的绑定器
+
+        public MyHandler(String url, boolean regex, Object controller, Method method) throws IllegalAccessException {
+            this.url = url;
+            this.regex = regex;
             this.controller = controller;
             this.method = method;
+            this.invoker = MyInvoker.create(controller, method);
+            this.async = CompletionStage.class.isAssignableFrom(method.getReturnType());
+            this.responseBody = method.isAnnotationPresent(MyResponseBody.class)
+                    || method.getDeclaringClass().isAnnotationPresent(MyResponseBody.class);
+            this.metrics = null == MyDispatcherServlet.this.metrics ? null : MyDispatcherServlet.this.metrics.register(url);
+            this.limit = createConcurrencyLimit(url, method);
+            //为每个方法参数生成绑定器,参数名、类型转换器和默认值都在这里确定好
+            this.adapter = new MyAdapter(MyArgumentBinder.create(method));
         }
     }
 
     /**
-     * 方法适配器
+     * 先缓存不超过minSize的内容,超过后才设置Content-Encoding并开始压缩
+     * 关闭时还没有超过minSize的内容原样输出,这时知道长度,可以设置Content-Length
      */
-    private class MyAdapter {
+    private static class ThresholdOutputStream extends OutputStream {
+
+        private final HttpServletResponse resp;
+
+        private final MyCompression.Encoding encoding;
+
+        private final byte[] head;
+
+        private int count;
+
+        //压缩流,还没有开始压缩时为null
+        private OutputStream out;
+
+        private boolean closed;
+
+        ThresholdOutputStream(HttpServletResponse resp, MyCompression.Encoding encoding, int minSize) {
+            this.resp = resp;
+            this.encoding = encoding;
+            this.head = new byte[Math.max(0, minSize)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            if(null == out){
+                if(count + len < head.length){
+                    System.arraycopy(b, off, head, count, len);
+                    count += len;
+                    return;
+                }
+                resp.setHeader(CONTENT_ENCODING, encoding.getToken());
+                out = MyCompression.wrap(resp.getOutputStream(), encoding);
+                out.write(head, 0, count);
+            }
+            out.write(b, off, len);
+        }
 
-        //存储方法参数中的参数名和参数位置  key为参数名 value为该参数是该方法中的第几个参数
-        private Map<String, Integer> paramMapping = new HashMap<>();
+        @Override
+        public void close() throws IOException {
 
-        public MyAdapter(Map<String, Integer> paramMapping) {
-            this.paramMapping = paramMapping;
+            if(closed){
+                return;
+            }
+            closed = true;
+            if(null != out){
+                out.close();
+            }else if(count > 0){
+                resp.setContentLength(count);
+                resp.getOutputStream().write(head, 0, count);
+            }
         }
     }
 
     /**
-     * 存储所有静态文件
+     * 批量请求中的一个子请求
      */
-    private class ViewResolver {
+    private static class BatchRequest {
 
-        private String viewName;
+        private String path;//请求的url,可以带参数
 
-        private File viewFile;
+        private Map<String, String> params;//请求参数
 
-        public ViewResolver(String viewName, File viewFile) {
-            this.viewName = viewName;
-            this.viewFile = viewFile;
-        }
+        private Object body;//JSON格式的请求体,不为null时按POST请求处理
+    }
 
-        public String getViewName() {
-            return viewName;
-        }
+    /**
+     * 方法适配器
+     */
+    private class MyAdapter {
+
+        //方法参数的绑定器,和方法参数一一对应
+        private MyArgumentBinder[] binders;
 
-        public File getViewFile() {
-            return viewFile;
+        public MyAdapter(MyArgumentBinder[] binders) {
+            this.binders = binders;
         }
     }
 }
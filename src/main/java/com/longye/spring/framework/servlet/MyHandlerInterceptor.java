@@ -0,0 +1,46 @@
+package com.longye.spring.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+
+/**
+ * 接口拦截器,在接口方法执行前后执行,比如登录检查、统计耗时、解析租户
+ * 实现类加上@MyInterceptor注解后放入IOC容器,初始化时就确定好每个接口使用哪些拦截器,请求时不再匹配url
+ */
+public interface MyHandlerInterceptor {
+
+    /**
+     * 在绑定参数和执行接口方法之前执行
+     * @param req
+     * @param resp
+     * @param handler 接口方法
+     * @return 返回false时不再继续处理请求,响应由拦截器自己输出
+     * @throws Exception
+     */
+    default boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Method handler) throws Exception {
+        return true;
+    }
+
+    /**
+     * 接口方法执行成功后、输出响应之前执行,按拦截器的倒序执行
+     * @param req
+     * @param resp
+     * @param handler 接口方法
+     * @param result 接口方法的返回值,异步接口为CompletionStage的结果
+     * @throws Exception
+     */
+    default void postHandle(HttpServletRequest req, HttpServletResponse resp, Method handler, Object result) throws Exception {
+    }
+
+    /**
+     * 请求处理完成后执行,不管是否出现异常。只有preHandle返回true的拦截器才会执行,按倒序执行
+     * @param req
+     * @param resp
+     * @param handler 接口方法
+     * @param ex 处理过程中的异常,没有异常时为null
+     * @throws Exception
+     */
+    default void afterCompletion(HttpServletRequest req, HttpServletResponse resp, Method handler, Exception ex) throws Exception {
+    }
+}
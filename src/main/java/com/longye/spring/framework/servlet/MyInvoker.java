@@ -0,0 +1,60 @@
+package com.longye.spring.framework.servlet;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 接口方法的调用器
+ * 在初始化时把Method转换成绑定了controller对象的MethodHandle,并统一成(Object[])Object的签名
+ * 请求时直接invokeExact,不再走Method.invoke的反射调用和访问检查
+ */
+public final class MyInvoker {
+
+    //统一的方法签名 Object invoke(Object[] args)
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final MethodHandle handle;
+
+    private MyInvoker(MethodHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 创建method的调用器
+     * @param target method方法所在的对象,静态方法为null
+     * @param method
+     * @return
+     * @throws IllegalAccessException
+     */
+    public static MyInvoker create(Object target, Method method) throws IllegalAccessException {
+
+        //非public的方法需要先开放访问权限
+        method.setAccessible(true);
+
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if(!Modifier.isStatic(method.getModifiers())){
+            handle = handle.bindTo(target);
+        }
+        return new MyInvoker(handle.asSpreader(Object[].class, method.getParameterTypes().length).asType(GENERIC_TYPE));
+    }
+
+    /**
+     * 调用方法,方法抛出的异常原样抛出,不再包装成InvocationTargetException
+     * @param args
+     * @return 方法的返回值,void方法返回null
+     * @throws Exception
+     */
+    public Object invoke(Object[] args) throws Exception {
+
+        try {
+            return (Object) handle.invokeExact(args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.longye.spring.framework.servlet;
+
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 静态资源,比如css、js和图片
+ * url前缀和目录的对应关系在application.properties中配置,比如/static/=static,目录可以是classpath中的目录或者文件系统中的目录
+ * 支持Range、If-Modified-Since和ETag。文件的元数据缓存在内存中,每秒最多检查一次文件是否被修改
+ * 在内嵌服务器中文件由服务器直接传输到socket,在servlet容器中使用FileChannel.transferTo写入响应流
+ */
+public class MyResourceHandler {
+
+    //文件元数据的有效期,过期后重新检查文件的大小和修改时间
+    private static final long METADATA_TTL = 1000;
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html;charset=UTF-8");
+        CONTENT_TYPES.put("htm", "text/html;charset=UTF-8");
+        CONTENT_TYPES.put("css", "text/css;charset=UTF-8");
+        CONTENT_TYPES.put("js", "application/javascript;charset=UTF-8");
+        CONTENT_TYPES.put("json", "application/json;charset=UTF-8");
+        CONTENT_TYPES.put("txt", "text/plain;charset=UTF-8");
+        CONTENT_TYPES.put("xml", "application/xml;charset=UTF-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+    }
+
+    //url前缀和对应的目录,按前缀长度倒序,先匹配更具体的前缀
+    private final List<Location> locations = new ArrayList<>();
+
+    //请求路径和文件的元数据
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+
+    //Cache-Control的max-age,单位秒,小于0时不输出
+    private final long maxAge;
+
+    /**
+     * @param mappings url前缀和目录,格式为/static/=static,多个用逗号分隔
+     * @param maxAge Cache-Control的max-age,单位秒
+     */
+    public MyResourceHandler(String mappings, long maxAge) {
+
+        this.maxAge = maxAge;
+        for (String mapping : mappings.split(",")) {
+            mapping = mapping.trim();
+            int eq = mapping.indexOf('=');
+            if(eq <= 0){
+                continue;
+            }
+            String prefix = mapping.substring(0, eq).trim();
+            if(!prefix.endsWith("/")){
+                prefix += "/";
+            }
+            File dir = resolveDirectory(mapping.substring(eq + 1).trim());
+            if(null != dir){
+                locations.add(new Location(prefix, dir));
+            }
+        }
+        locations.sort((a, b) -> b.prefix.length() - a.prefix.length());
+    }
+
+    public boolean isEmpty() {
+        return locations.isEmpty();
+    }
+
+    /**
+     * 输出请求的静态资源
+     * @param req
+     * @param resp
+     * @return 没有对应的文件时返回false,由调用方返回404
+     * @throws IOException
+     */
+    public boolean handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+
+        String method = req.getMethod();
+        boolean head = "HEAD".equals(method);
+        if(!head && !"GET".equals(method)){
+            return false;
+        }
+
+        Resource resource = getResource(req.getRequestURI());
+        if(null == resource){
+            return false;
+        }
+
+        resp.setHeader("Accept-Ranges", "bytes");
+        resp.setHeader("ETag", resource.etag);
+        resp.setDateHeader("Last-Modified", resource.lastModified);
+        if(maxAge >= 0){
+            resp.setHeader("Cache-Control", "max-age=" + maxAge);
+        }
+
+        if(notModified(req, resource)){
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        resp.setContentType(resource.contentType);
+        long position = 0;
+        long count = resource.length;
+
+        String range = req.getHeader("Range");
+        if(null != range && ifRangeMatches(req, resource)){
+            long[] bounds = parseRange(range, resource.length);
+            if(null == bounds){
+                resp.setStatus(416);
+                resp.setHeader("Content-Range", "bytes */" + resource.length);
+                return true;
+            }
+            //多个区间时bounds为空数组,直接返回整个文件
+            if(bounds.length == 2){
+                position = bounds[0];
+                count = bounds[1] - bounds[0] + 1;
+                resp.setStatus(206);
+                resp.setHeader("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + resource.length);
+            }
+        }
+
+        setContentLength(resp, count);
+        if(head || count == 0){
+            return true;
+        }
+        writeFile(resp, resource.file, position, count);
+        return true;
+    }
+
+    /**
+     * 获取请求路径对应的文件,元数据过期时重新检查文件
+     */
+    private Resource getResource(String uri) {
+
+        long now = System.currentTimeMillis();
+        Resource resource = resources.get(uri);
+        if(null != resource && now - resource.checkedAt < METADATA_TTL){
+            return resource;
+        }
+
+        File file = null == resource ? resolveFile(uri) : resource.file;
+        if(null == file || !file.isFile()){
+            if(null != resource){
+                resources.remove(uri);
+            }
+            return null;
+        }
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if(null != resource && resource.length == length && resource.lastModified == lastModified){
+            resource.checkedAt = now;
+            return resource;
+        }
+        resource = new Resource(file, length, lastModified, contentType(file.getName()), now);
+        resources.put(uri, resource);
+        return resource;
+    }
+
+    /**
+     * 根据url找到对应的文件,不允许访问目录之外的文件
+     */
+    private File resolveFile(String uri) {
+
+        for (Location location : locations) {
+            if(!uri.startsWith(location.prefix)){
+                continue;
+            }
+            String path = decode(uri.substring(location.prefix.length()));
+            if(null == path || path.isEmpty() || path.indexOf('\0') >= 0 || path.contains("\\")){
+                return null;
+            }
+            for (String segment : path.split("/")) {
+                if("..".equals(segment) || ".".equals(segment)){
+                    return null;
+                }
+            }
+            File file = new File(location.dir, path);
+            try {
+                //符号链接等方式指向目录之外的文件也不允许访问
+                if(!file.getCanonicalPath().startsWith(location.canonicalPath)){
+                    return null;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            return file;
+        }
+        return null;
+    }
+
+    /**
+     * If-None-Match优先于If-Modified-Since
+     */
+    private boolean notModified(HttpServletRequest req, Resource resource) {
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if(null != ifNoneMatch){
+            return matchesEtag(ifNoneMatch, resource.etag);
+        }
+        long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+        //HTTP的时间只精确到秒
+        return ifModifiedSince >= 0 && resource.lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range和当前文件一致时Range才有效,否则返回整个文件
+     */
+    private boolean ifRangeMatches(HttpServletRequest req, Resource resource) {
+
+        String ifRange = req.getHeader("If-Range");
+        if(null == ifRange){
+            return true;
+        }
+        if(ifRange.startsWith("\"") || ifRange.startsWith("W/")){
+            return ifRange.equals(resource.etag);
+        }
+        long date = getDateHeader(req, "If-Range");
+        return date >= 0 && resource.lastModified / 1000 == date / 1000;
+    }
+
+    private static boolean matchesEtag(String header, String etag) {
+
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if(tag.startsWith("W/")){
+                tag = tag.substring(2);
+            }
+            if("*".equals(tag) || etag.equals(tag)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range,只支持单个区间
+     * @return 区间的开始和结束位置(包含);多个区间或者格式无法识别时为空数组;区间超出文件时为null
+     */
+    private static long[] parseRange(String range, long length) {
+
+        if(!range.startsWith("bytes=") || range.indexOf(',') >= 0){
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if(dash < 0){
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if(dash == 0){
+                //bytes=-n表示最后n个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if(suffix <= 0){
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            }else{
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if(start >= length || start > end){
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * url中的路径是编码过的,比如空格为%20。路径中的+不是空格
+     */
+    private static String decode(String path) {
+
+        if(path.indexOf('%') < 0){
+            return path;
+        }
+        try {
+            return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long getDateHeader(HttpServletRequest req, String name) {
+
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            //无法解析的时间当作没有该header
+            return -1;
+        }
+    }
+
+    private static void setContentLength(HttpServletResponse resp, long length) {
+
+        if(length <= Integer.MAX_VALUE){
+            resp.setContentLength((int) length);
+        }else{
+            resp.setHeader("Content-Length", String.valueOf(length));
+        }
+    }
+
+    /**
+     * 输出文件内容
+     * 内嵌服务器直接把文件交给服务器传输,不经过内存;servlet容器中通过transferTo写入响应流
+     */
+    private static void writeFile(HttpServletResponse resp, File file, long position, long count) throws IOException {
+
+        if(resp instanceof MyInMemoryResponse){
+            ((MyInMemoryResponse) resp).setFileBody(file, position, count);
+            return;
+        }
+        OutputStream out = resp.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long end = position + count;
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, Channels.newChannel(out));
+                if(n <= 0){
+                    //文件在传输过程中被截断
+                    throw new IOException("文件" + file + "已经被修改");
+                }
+                position += n;
+            }
+        }
+    }
+
+    private static String contentType(String fileName) {
+
+        int dot = fileName.lastIndexOf('.');
+        if(dot >= 0){
+            String type = CONTENT_TYPES.get(fileName.substring(dot + 1).toLowerCase());
+            if(null != type){
+                return type;
+            }
+        }
+        String type = URLConnection.guessContentTypeFromName(fileName);
+        return null == type ? DEFAULT_CONTENT_TYPE : type;
+    }
+
+    /**
+     * 先在classpath中查找目录,找不到时当作文件系统中的路径
+     */
+    private static File resolveDirectory(String location) {
+
+        URL url = MyResourceHandler.class.getClassLoader().getResource(location);
+        File dir = null == url ? new File(location) : new File(url.getFile());
+        return dir.isDirectory() ? dir : null;
+    }
+
+    /**
+     * url前缀和目录
+     */
+    private static class Location {
+
+        private final String prefix;
+
+        private final File dir;
+
+        //目录的真实路径,以/结尾,用于检查文件是否在目录中
+        private final String canonicalPath;
+
+        Location(String prefix, File dir) {
+            this.prefix = prefix;
+            this.dir = dir;
+            String path;
+            try {
+                path = dir.getCanonicalPath();
+            } catch (IOException e) {
+                path = dir.getAbsolutePath();
+            }
+            this.canonicalPath = path.endsWith(File.separator) ? path : path + File.separator;
+        }
+    }
+
+    /**
+     * 文件的元数据
+     */
+    private static class Resource {
+
+        private final File file;
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final String etag;
+
+        private final String contentType;
+
+        //最后一次检查文件的时间
+        private volatile long checkedAt;
+
+        Resource(File file, long length, long lastModified, String contentType, long checkedAt) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+            this.contentType = contentType;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
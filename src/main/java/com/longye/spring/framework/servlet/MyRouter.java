@@ -0,0 +1,193 @@
+package com.longye.spring.framework.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * url路由
+ * 普通的url按/拆分成一段一段存储在前缀树中,查找时每一段都是一次HashMap查找,和路由的数量无关
+ * {xxx}形式的段是路径变量,可以匹配任意一段。只有显式声明为正则的url才会在前缀树匹配不到时按顺序用正则匹配
+ */
+public class MyRouter<T> {
+
+    //路径变量在前缀树中的统一key
+    private static final String VARIABLE = "{}";
+
+    //一个url中最多允许的路径变量个数
+    private static final int MAX_VARIABLES = 8;
+
+    private final Node<T> root = new Node<>();
+
+    private final List<RegexRoute<T>> regexRoutes = new ArrayList<>();
+
+    /**
+     * 注册普通url,比如/test/fruit、/user/{id}
+     * @param url
+     * @param handler
+     */
+    public void addRoute(String url, T handler) {
+
+        Node<T> node = root;
+        List<String> variables = new ArrayList<>();
+
+        int pos = 0;
+        int length = url.length();
+        while (pos < length) {
+            int end = url.indexOf('/', pos);
+            if(end < 0){
+                end = length;
+            }
+            if(end > pos){
+                String segment = url.substring(pos, end);
+                if(segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}'){
+                    variables.add(segment.substring(1, segment.length() - 1));
+                    segment = VARIABLE;
+                }
+                Node<T> child = node.children.get(segment);
+                if(null == child){
+                    child = new Node<>();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+            pos = end + 1;
+        }
+
+        if(variables.size() > MAX_VARIABLES){
+            throw new IllegalStateException("url中的路径变量过多: " + url);
+        }
+        if(null != node.handler){
+            throw new IllegalStateException("url映射重复: " + url);
+        }
+        node.handler = handler;
+        node.variables = variables.toArray(new String[variables.size()]);
+    }
+
+    /**
+     * 注册正则url
+     * @param regex
+     * @param handler
+     */
+    public void addRegexRoute(String regex, T handler) {
+
+        regexRoutes.add(new RegexRoute<>(Pattern.compile(regex), handler));
+    }
+
+    /**
+     * 查找url对应的handler,没有找到则返回null
+     * @param url
+     * @return
+     */
+    public Match<T> match(String url) {
+
+        String[] values = new String[MAX_VARIABLES];
+        Node<T> node = find(root, url, 0, values, 0);
+        if(null != node){
+            if(node.variables.length == 0){
+                return new Match<>(node.handler, Collections.<String, String>emptyMap());
+            }
+            Map<String, String> pathVariables = new LinkedHashMap<>();
+            for (int i = 0; i < node.variables.length; i++) {
+                pathVariables.put(node.variables[i], values[i]);
+            }
+            return new Match<>(node.handler, pathVariables);
+        }
+
+        for (RegexRoute<T> route : regexRoutes) {
+            if(route.pattern.matcher(url).matches()){
+                return new Match<>(route.handler, Collections.<String, String>emptyMap());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从pos开始逐段匹配,普通的段优先,匹配不到再尝试路径变量
+     */
+    private Node<T> find(Node<T> node, String url, int pos, String[] values, int depth) {
+
+        int length = url.length();
+        //跳过多余的/
+        while (pos < length && url.charAt(pos) == '/') {
+            pos++;
+        }
+        if(pos >= length){
+            return null != node.handler ? node : null;
+        }
+
+        int end = url.indexOf('/', pos);
+        if(end < 0){
+            end = length;
+        }
+        String segment = url.substring(pos, end);
+
+        Node<T> child = node.children.get(segment);
+        if(null != child){
+            Node<T> found = find(child, url, end, values, depth);
+            if(null != found){
+                return found;
+            }
+        }
+
+        child = node.children.get(VARIABLE);
+        if(null != child && depth < values.length){
+            values[depth] = segment;
+            return find(child, url, end, values, depth + 1);
+        }
+        return null;
+    }
+
+    /**
+     * 前缀树的节点
+     */
+    private static class Node<T> {
+
+        private Map<String, Node<T>> children = new HashMap<>();
+
+        private T handler;
+
+        //该url中路径变量的名称,按出现的顺序
+        private String[] variables;
+    }
+
+    private static class RegexRoute<T> {
+
+        private Pattern pattern;
+
+        private T handler;
+
+        public RegexRoute(Pattern pattern, T handler) {
+            this.pattern = pattern;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * 匹配结果
+     */
+    public static class Match<T> {
+
+        private T handler;
+
+        //路径变量,key为变量名
+        private Map<String, String> pathVariables;
+
+        public Match(T handler, Map<String, String> pathVariables) {
+            this.handler = handler;
+            this.pathVariables = pathVariables;
+        }
+
+        public T getHandler() {
+            return handler;
+        }
+
+        public Map<String, String> getPathVariables() {
+            return pathVariables;
+        }
+    }
+}
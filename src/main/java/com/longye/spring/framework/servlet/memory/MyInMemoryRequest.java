@@ -0,0 +1,538 @@
+package com.longye.spring.framework.servlet.memory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.Part;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * 内存中的HttpServletRequest
+ * 不依赖servlet容器就可以调用MyDispatcherServlet,用于基准测试、预热等场景。可以reset()后重复使用
+ */
+public class MyInMemoryRequest implements HttpServletRequest {
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private String method = "GET";
+
+    private String requestURI = "/";
+
+    private String queryString;
+
+    private String protocol = "HTTP/1.1";
+
+    private String remoteAddr = "127.0.0.1";
+
+    private int remotePort;
+
+    private String serverName = "localhost";
+
+    private int serverPort = 80;
+
+    private String characterEncoding;
+
+    private String contentType;
+
+    private byte[] content = new byte[0];
+
+    //请求体只能读取一次
+    private ServletInputStream inputStream;
+
+    private final Map<String, String[]> parameters = new LinkedHashMap<>();
+
+    //header的名称不区分大小写
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    public MyInMemoryRequest() {
+    }
+
+    public MyInMemoryRequest(String method, String requestURI) {
+        this.method = method;
+        this.requestURI = requestURI;
+    }
+
+    /**
+     * 清空请求,以便重复使用
+     */
+    public void reset() {
+        method = "GET";
+        requestURI = "/";
+        queryString = null;
+        characterEncoding = null;
+        contentType = null;
+        content = new byte[0];
+        inputStream = null;
+        parameters.clear();
+        headers.clear();
+        attributes.clear();
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public void setRequestURI(String requestURI) {
+        this.requestURI = requestURI;
+    }
+
+    public void setQueryString(String queryString) {
+        this.queryString = queryString;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public void setRemoteAddr(String remoteAddr) {
+        this.remoteAddr = remoteAddr;
+    }
+
+    public void setRemotePort(int remotePort) {
+        this.remotePort = remotePort;
+    }
+
+    public void setServerName(String serverName) {
+        this.serverName = serverName;
+    }
+
+    public void setServerPort(int serverPort) {
+        this.serverPort = serverPort;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+        this.inputStream = null;
+    }
+
+    public void setParameter(String name, String... values) {
+        parameters.put(name, values);
+    }
+
+    public void addParameter(String name, String value) {
+        String[] values = parameters.get(name);
+        if(null == values){
+            parameters.put(name, new String[]{value});
+            return;
+        }
+        String[] newValues = new String[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, values.length);
+        newValues[values.length] = value;
+        parameters.put(name, newValues);
+    }
+
+    public void addHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if(null == values){
+            values = new ArrayList<>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    public void setHeader(String name, String value) {
+        headers.remove(name);
+        addHeader(name, value);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer(getScheme()).append("://").append(serverName);
+        if(serverPort != 80){
+            url.append(':').append(serverPort);
+        }
+        return url.append(requestURI);
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getPathInfo() {
+        return requestURI;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return null == values || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return null == values || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return Collections.enumeration(null == values ? Collections.<String>emptyList() : values);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if(null == value){
+            return -1;
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("无法解析的日期: " + value);
+        }
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return null == value ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+        this.characterEncoding = env;
+    }
+
+    @Override
+    public int getContentLength() {
+        return content.length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if(null == inputStream){
+            final ByteArrayInputStream in = new ByteArrayInputStream(content);
+            inputStream = new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public int available() {
+                    return in.available();
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        Charset charset = null == characterEncoding ? StandardCharsets.ISO_8859_1 : Charset.forName(characterEncoding);
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        attributes.put(name, o);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public String getScheme() {
+        return "http";
+    }
+
+    @Override
+    public String getServerName() {
+        return serverName;
+    }
+
+    @Override
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return remoteAddr;
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return remoteAddr;
+    }
+
+    @Override
+    public int getRemotePort() {
+        return remotePort;
+    }
+
+    @Override
+    public String getLocalName() {
+        return serverName;
+    }
+
+    @Override
+    public String getLocalAddr() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public int getLocalPort() {
+        return serverPort;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+    }
+
+    @Override
+    public boolean isSecure() {
+        return false;
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public String getRealPath(String path) {
+        return null;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("不支持异步请求");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("不支持异步请求");
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        throw new IllegalStateException("不支持异步请求");
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        return null;
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return false;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        return null;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return false;
+    }
+
+    @Override
+    public boolean authenticate(HttpServletResponse response) {
+        return false;
+    }
+
+    @Override
+    public void login(String username, String password) {
+    }
+
+    @Override
+    public void logout() {
+    }
+
+    @Override
+    public Collection<Part> getParts() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Part getPart(String name) {
+        return null;
+    }
+}
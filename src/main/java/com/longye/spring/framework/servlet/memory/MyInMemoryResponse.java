@@ -0,0 +1,373 @@
+package com.longye.spring.framework.servlet.memory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * 内存中的HttpServletResponse,响应内容写入内存
+ * 和容器一样,getWriter()和getOutputStream()只能使用其中一个。可以reset()后重复使用
+ */
+public class MyInMemoryResponse implements HttpServletResponse {
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private static final String CHARSET = ";charset=";
+
+    private int status = SC_OK;
+
+    private String contentType;
+
+    private String characterEncoding = StandardCharsets.ISO_8859_1.name();
+
+    private int contentLength = -1;
+
+    private Locale locale = Locale.getDefault();
+
+    private boolean committed;
+
+    //header的名称不区分大小写
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream(1024);
+
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            content.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            content.write(b, off, len);
+        }
+    };
+
+    private boolean outputStreamUsed;
+
+    private PrintWriter writer;
+
+    //响应体为文件的一部分时,由内嵌服务器直接从文件传输到socket,不经过内存
+    private File fileBody;
+
+    private long filePosition;
+
+    private long fileCount;
+
+    /**
+     * 清空响应,以便重复使用
+     */
+    public void reset() {
+        resetBuffer();
+        status = SC_OK;
+        contentType = null;
+        characterEncoding = StandardCharsets.ISO_8859_1.name();
+        contentLength = -1;
+        committed = false;
+        headers.clear();
+        outputStreamUsed = false;
+        writer = null;
+        fileBody = null;
+    }
+
+    /**
+     * 使用文件的一部分作为响应体,之后不能再写入其他内容
+     * @param file
+     * @param position 开始的位置
+     * @param count 字节数
+     */
+    public void setFileBody(File file, long position, long count) {
+        this.fileBody = file;
+        this.filePosition = position;
+        this.fileCount = count;
+    }
+
+    /**
+     * 作为响应体的文件,没有时为null
+     * @return
+     */
+    public File getFileBody() {
+        return fileBody;
+    }
+
+    public long getFilePosition() {
+        return filePosition;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * 获取响应的内容
+     * @return
+     */
+    public byte[] getContentAsByteArray() {
+        if(null != writer){
+            writer.flush();
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * 按响应的编码获取响应的内容
+     * @return
+     */
+    public String getContentAsString() {
+        return new String(getContentAsByteArray(), Charset.forName(characterEncoding));
+    }
+
+    /**
+     * 响应内容的字节数
+     * @return
+     */
+    public int getContentSize() {
+        if(null != writer){
+            writer.flush();
+        }
+        return content.size();
+    }
+
+    public int getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if(null != writer){
+            throw new IllegalStateException("getWriter()已经被调用过了");
+        }
+        outputStreamUsed = true;
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if(outputStreamUsed){
+            throw new IllegalStateException("getOutputStream()已经被调用过了");
+        }
+        if(null == writer){
+            writer = new PrintWriter(new OutputStreamWriter(content, Charset.forName(characterEncoding)));
+        }
+        return writer;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if(null == writer){
+            this.characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.contentType = type;
+        if(null != type){
+            int index = type.toLowerCase(Locale.ENGLISH).indexOf(CHARSET);
+            if(index >= 0){
+                setCharacterEncoding(type.substring(index + CHARSET.length()).trim());
+            }
+        }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        this.contentLength = len;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public int getBufferSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if(null != writer){
+            writer.flush();
+        }
+        committed = true;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if(null != writer){
+            writer.flush();
+        }
+        content.reset();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        this.locale = loc;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        addHeader("Set-Cookie", cookie.getName() + "=" + cookie.getValue());
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    @Deprecated
+    public String encodeUrl(String url) {
+        return url;
+    }
+
+    @Override
+    @Deprecated
+    public String encodeRedirectUrl(String url) {
+        return url;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        this.status = sc;
+        resetBuffer();
+        if(null != msg){
+            content.write(msg.getBytes(StandardCharsets.UTF_8));
+        }
+        committed = true;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        this.status = SC_FOUND;
+        setHeader("Location", location);
+        committed = true;
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.remove(name);
+        addHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if(null == values){
+            values = new ArrayList<>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+    }
+
+    @Override
+    @Deprecated
+    public void setStatus(int sc, String sm) {
+        this.status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return null == values || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return null == values ? Collections.<String>emptyList() : Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return Collections.unmodifiableSet(headers.keySet());
+    }
+
+    private static String formatDate(long date) {
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(date));
+    }
+}
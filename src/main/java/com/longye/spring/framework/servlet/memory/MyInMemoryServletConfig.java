@@ -0,0 +1,47 @@
+package com.longye.spring.framework.servlet.memory;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存中的ServletConfig,用来在servlet容器之外初始化MyDispatcherServlet
+ */
+public class MyInMemoryServletConfig implements ServletConfig {
+
+    private final String servletName;
+
+    private final Map<String, String> initParameters = new LinkedHashMap<>();
+
+    public MyInMemoryServletConfig(String servletName) {
+        this.servletName = servletName;
+    }
+
+    public MyInMemoryServletConfig addInitParameter(String name, String value) {
+        initParameters.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getServletName() {
+        return servletName;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public String getInitParameter(String name) {
+        return initParameters.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getInitParameterNames() {
+        return Collections.enumeration(initParameters.keySet());
+    }
+}
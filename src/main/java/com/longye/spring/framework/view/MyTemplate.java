@@ -0,0 +1,168 @@
+package com.longye.spring.framework.view;
+
+import com.longye.spring.framework.buffer.MyBufferOutputStream;
+import com.longye.spring.framework.compress.MyCompression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 编译后的.jspk页面模板
+ * 页面文件只解析一次,拆分成文本片段和@{xxx}占位符,渲染时按顺序拼接即可,不需要每次请求都用正则去逐行匹配
+ */
+public class MyTemplate {
+
+    //占位符的开始标记
+    private static final String PREFIX = "@{";
+
+    //占位符的结束标记
+    private static final char SUFFIX = '}';
+
+    //占位符中的参数名,比如@{name}中的name
+    private final String[] names;
+
+    //UTF-8编码后的文本片段,encodedTexts[i]之后紧跟着占位符names[i],所以encodedTexts.length == names.length + 1
+    //编译时就编码好,输出时不需要每次都重新编码
+    private final byte[][] encodedTexts;
+
+    //没有占位符的页面压缩后的内容,下标为MyCompression.Encoding的ordinal,第一次使用时压缩
+    private final AtomicReferenceArray<byte[]> compressed = new AtomicReferenceArray<>(MyCompression.Encoding.values().length);
+
+    private MyTemplate(String[] texts, String[] names) {
+        this.names = names;
+        this.encodedTexts = new byte[texts.length][];
+        for (int i = 0; i < texts.length; i++) {
+            encodedTexts[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 读取并编译页面文件,文件统一按UTF-8解析
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static MyTemplate compile(File file) throws IOException {
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        return compile(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 编译页面内容
+     * 这里不用正则,直接查找@{和},没有闭合的@{当作普通文本处理
+     * @param content
+     * @return
+     */
+    public static MyTemplate compile(String content) {
+
+        List<String> texts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        int start = 0;
+        int from = 0;
+        while (true) {
+            int open = content.indexOf(PREFIX, from);
+            if(open < 0){
+                break;
+            }
+            int close = content.indexOf(SUFFIX, open + PREFIX.length());
+            if(close < 0){
+                break;
+            }
+            String name = content.substring(open + PREFIX.length(), close);
+            //@{xxx}中不允许再出现{,和之前的正则@\{[^{]*\}保持一致
+            if(name.indexOf('{') >= 0){
+                from = open + 1;
+                continue;
+            }
+            String text = content.substring(start, open);
+            texts.add(text);
+            names.add(name);
+
+            start = close + 1;
+            from = start;
+        }
+        String text = content.substring(start);
+        texts.add(text);
+
+        return new MyTemplate(texts.toArray(new String[texts.size()]), names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * 渲染页面并直接写入输出流,文本片段使用编码好的字节,只有model中的值需要在请求时编码
+     * @param model
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(Map<String, Object> model, OutputStream out) throws IOException {
+
+        for (int i = 0; i < names.length; i++) {
+            out.write(encodedTexts[i]);
+            Object value = null == model ? null : model.get(names[i]);
+            if(null != value){
+                out.write(value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        out.write(encodedTexts[names.length]);
+    }
+
+    /**
+     * 渲染页面至池化的缓冲区中,字符串类型的值直接编码进缓冲区,不生成临时的byte[]
+     * @param model
+     * @param out
+     */
+    public void writeTo(Map<String, Object> model, MyBufferOutputStream out) {
+
+        for (int i = 0; i < names.length; i++) {
+            out.write(encodedTexts[i], 0, encodedTexts[i].length);
+            Object value = null == model ? null : model.get(names[i]);
+            if(null != value){
+                out.writeUtf8(value instanceof CharSequence ? (CharSequence) value : value.toString());
+            }
+        }
+        out.write(encodedTexts[names.length], 0, encodedTexts[names.length].length);
+    }
+
+    /**
+     * 页面中是否没有任何占位符,没有占位符的页面渲染结果是固定的
+     * @return
+     */
+    public boolean isStatic() {
+        return names.length == 0;
+    }
+
+    /**
+     * 没有占位符的页面编码后的字节数,可以直接作为Content-Length
+     * @return
+     */
+    public int getStaticLength() {
+        return encodedTexts[0].length;
+    }
+
+    /**
+     * 没有占位符的页面压缩后的内容,每种压缩方式只压缩一次
+     * @param encoding
+     * @return
+     */
+    public byte[] getCompressed(MyCompression.Encoding encoding) {
+
+        if(!isStatic()){
+            throw new IllegalStateException("有占位符的页面不能预先压缩");
+        }
+        byte[] bytes = compressed.get(encoding.ordinal());
+        if(null == bytes){
+            //并发时可能重复压缩,结果是一样的
+            bytes = MyCompression.compress(encodedTexts[0], encoding);
+            compressed.set(encoding.ordinal(), bytes);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,205 @@
+package com.longye.spring.framework.view;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 所有页面的仓库,key为页面名
+ * 启动时递归加载页面目录下的所有文件并编译成MyTemplate保存在内存中,渲染时不再读取磁盘
+ * 子目录中的页面名为相对路径,比如admin/list.jspk
+ * 开启watch后使用WatchService监听页面目录,只重新编译修改过的页面,不需要重启
+ */
+public class MyViewRepository implements Closeable {
+
+    private final File root;
+
+    private final Path rootPath;
+
+    //页面名和编译后的模板,监听线程修改,请求线程读取
+    private final Map<String, MyTemplate> templates = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+
+    //WatchKey和它监听的目录
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+
+    private Thread watchThread;
+
+    /**
+     * @param root 页面目录
+     * @param watch 是否监听页面文件的修改
+     * @throws IOException
+     */
+    public MyViewRepository(File root, boolean watch) throws IOException {
+
+        this.root = root;
+        this.rootPath = root.toPath();
+        if(watch){
+            watchService = FileSystems.getDefault().newWatchService();
+        }
+        load(root);
+
+        if(watch){
+            watchThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watch();
+                }
+            }, "my-spring-view-watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        }
+    }
+
+    /**
+     * 获取页面对应的模板
+     * @param viewName 页面名,即相对于页面目录的路径
+     * @return 页面不存在时为null
+     */
+    public MyTemplate get(String viewName) {
+        return templates.get(viewName);
+    }
+
+    public boolean isEmpty() {
+        return templates.isEmpty();
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    /**
+     * 停止监听页面文件
+     */
+    @Override
+    public void close() {
+
+        if(null == watchService){
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 递归加载目录下的所有页面,开启watch时同时监听每一级目录
+     */
+    private void load(File dir) throws IOException {
+
+        File[] files = dir.listFiles();
+        if(null == files){
+            return;
+        }
+        if(null != watchService){
+            Path path = dir.toPath();
+            WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirs.put(key, path);
+        }
+        for (File file : files) {
+            if(file.isDirectory()){
+                load(file);
+            }else{
+                compile(file);
+            }
+        }
+    }
+
+    private void compile(File file) throws IOException {
+        templates.put(viewName(file.toPath()), MyTemplate.compile(file));
+    }
+
+    /**
+     * 页面名为相对于页面目录的路径,统一使用/分隔
+     */
+    private String viewName(Path path) {
+        return rootPath.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 监听线程,文件新增或修改时重新编译,删除时移除
+     */
+    private void watch() {
+
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                try {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW || null == dir){
+                        //丢失了事件,只能全部重新加载
+                        reloadAll();
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    onChange(event.kind(), path);
+                } catch (IOException | RuntimeException e) {
+                    //编辑器保存文件的过程中可能读到不完整的文件,等下一次修改事件再编译
+                    e.printStackTrace();
+                }
+            }
+            if(!key.reset()){
+                watchedDirs.remove(key);
+            }
+        }
+    }
+
+    private void onChange(WatchEvent.Kind<?> kind, Path path) throws IOException {
+
+        File file = path.toFile();
+        if(kind == StandardWatchEventKinds.ENTRY_DELETE){
+            //删除的可能是目录,移除该目录下所有的页面
+            String name = viewName(path);
+            templates.remove(name);
+            String prefix = name + "/";
+            for (String viewName : templates.keySet()) {
+                if(viewName.startsWith(prefix)){
+                    templates.remove(viewName);
+                }
+            }
+            return;
+        }
+        if(file.isDirectory()){
+            //新建的子目录,修改目录事件不需要处理
+            if(kind == StandardWatchEventKinds.ENTRY_CREATE){
+                load(file);
+            }
+            return;
+        }
+        if(file.isFile()){
+            compile(file);
+        }
+    }
+
+    private void reloadAll() throws IOException {
+
+        for (WatchKey key : watchedDirs.keySet()) {
+            key.cancel();
+        }
+        watchedDirs.clear();
+        //重新加载期间旧的页面仍然可用,加载完再移除已经删除的页面
+        load(root);
+        for (String viewName : templates.keySet()) {
+            if(!new File(root, viewName).isFile()){
+                templates.remove(viewName);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.longye.spring.framework.bind;
+
+import com.longye.spring.framework.annotation.MyPathVariable;
+import com.longye.spring.framework.servlet.MyRouter;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 路径变量的绑定:路由按原始的url匹配,绑定时再解码
+ */
+public class MyArgumentBinderTest {
+
+    public void fruit(@MyPathVariable("name") String name) {
+    }
+
+    @Test
+    public void decodesNonAsciiPathVariable() throws Exception {
+        assertEquals("苹果", bindName("/fruit/%E8%8B%B9%E6%9E%9C"));
+    }
+
+    @Test
+    public void decodesEncodedSpaceAndKeepsPlus() throws Exception {
+        assertEquals("red apple", bindName("/fruit/red%20apple"));
+        assertEquals("a+b", bindName("/fruit/a+b"));
+    }
+
+    @Test
+    public void encodedSlashIsNotSegmentSeparator() throws Exception {
+        assertEquals("a/b", bindName("/fruit/a%2Fb"));
+    }
+
+    @Test(expected = MyBindException.class)
+    public void rejectsMalformedEscape() throws Exception {
+        bindName("/fruit/%E8%8");
+    }
+
+    private String bindName(String url) throws Exception {
+
+        MyRouter<String> router = new MyRouter<>();
+        router.addRoute("/fruit/{name}", "fruit");
+        MyRouter.Match<String> match = router.match(url);
+        assertNotNull(match);
+
+        Method method = MyArgumentBinderTest.class.getMethod("fruit", String.class);
+        MyArgumentBinder[] binders = MyArgumentBinder.create(method);
+        Map<String, String> pathVariables = match.getPathVariables();
+        return (String) binders[0].bind(null, null, pathVariables);
+    }
+}
@@ -0,0 +1,56 @@
+package com.longye.spring.framework.buffer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 线程结束后它用过的块仍然可以被其他线程使用,堆外内存不会被耗尽
+ */
+public class MyBufferPoolTest {
+
+    @Test
+    public void chunksOutliveTheThreadsThatUsedThem() throws Exception {
+
+        final MyBufferPool pool = new MyBufferPool(1024, 4 * 1024);
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ByteBuffer[] buffers = new ByteBuffer[4];
+                    for (int j = 0; j < buffers.length; j++) {
+                        buffers[j] = pool.acquire();
+                    }
+                    for (ByteBuffer buffer : buffers) {
+                        pool.release(buffer);
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+
+        assertEquals(0, pool.getHeapAllocations());
+        assertEquals(4 * 1024, pool.getAllocatedBytes());
+        assertEquals(4, pool.getPooled());
+        assertEquals(15 * 4, pool.getHits());
+    }
+
+    @Test
+    public void fallsBackToHeapWhenAllChunksAreInUse() {
+
+        MyBufferPool pool = new MyBufferPool(1024, 1024);
+        ByteBuffer direct = pool.acquire();
+        ByteBuffer heap = pool.acquire();
+        assertTrue(direct.isDirect());
+        assertTrue(!heap.isDirect());
+
+        pool.release(heap);
+        pool.release(direct);
+        assertEquals(1, pool.getPooled());
+        assertTrue(pool.acquire().isDirect());
+    }
+}
@@ -0,0 +1,31 @@
+package com.longye.spring.framework.context;
+
+import com.longye.spring.framework.context.fixture.LazyConsumer;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 依赖注入时一个属性出错不影响其他属性
+ */
+public class ApplicationContextTest {
+
+    @After
+    public void close() {
+        ApplicationContext.close();
+    }
+
+    @Test
+    public void lazyBeanInjectedByClassIsSkipped() {
+
+        ApplicationContext.initIOC("lazy-fixture.properties");
+        LazyConsumer consumer = (LazyConsumer) ApplicationContext.getIOC().get("lazyConsumer");
+        assertNotNull(consumer);
+        assertNull(consumer.byClass);
+        assertNotNull(consumer.byInterface);
+        assertEquals("lazy", consumer.byInterface.name());
+    }
+}
@@ -0,0 +1,17 @@
+package com.longye.spring.framework.context.fixture;
+
+import com.longye.spring.framework.annotation.MyAutowired;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * 第一个属性按实现类注入延迟初始化的bean,无法赋值,不应该影响第二个属性
+ */
+@MyService("lazyConsumer")
+public class LazyConsumer {
+
+    @MyAutowired("lazyService")
+    public LazyServiceImpl byClass;
+
+    @MyAutowired("lazyService")
+    public LazyService byInterface;
+}
@@ -0,0 +1,9 @@
+package com.longye.spring.framework.context.fixture;
+
+/**
+ * 延迟初始化的bean的接口
+ */
+public interface LazyService {
+
+    String name();
+}
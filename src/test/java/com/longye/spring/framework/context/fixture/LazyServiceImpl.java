@@ -0,0 +1,17 @@
+package com.longye.spring.framework.context.fixture;
+
+import com.longye.spring.framework.annotation.MyLazy;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * IOC容器中放的是LazyService的代理
+ */
+@MyService("lazyService")
+@MyLazy
+public class LazyServiceImpl implements LazyService {
+
+    @Override
+    public String name() {
+        return "lazy";
+    }
+}
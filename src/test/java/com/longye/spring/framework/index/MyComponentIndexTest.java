@@ -0,0 +1,143 @@
+package com.longye.spring.framework.index;
+
+import com.longye.spring.framework.context.ApplicationContext;
+import com.longye.spring.framework.index.fixture.DualRoleController;
+import com.longye.spring.framework.index.fixture.FixtureService;
+import com.longye.spring.framework.index.fixture.PlainController;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 组件索引和扫描classpath两种方式得到的bean的key应该一致
+ */
+public class MyComponentIndexTest {
+
+    private static final String FIXTURE_SOURCES = "src/test/java/com/longye/spring/framework/index/fixture";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void close() {
+        ApplicationContext.close();
+    }
+
+    @Test
+    public void beanNameLowersOnlyTheFirstChar() {
+
+        assertEquals("fruitController", MyComponentIndex.beanName("FruitController"));
+        //已经是小写开头的类名保持不变
+        assertEquals("fruit", MyComponentIndex.beanName("fruit"));
+        assertEquals("uRLController", MyComponentIndex.beanName("URLController"));
+    }
+
+    @Test
+    public void dualRoleClassHasSameKeysInIndexAndScan() throws Exception {
+
+        Set<String> indexed = new TreeSet<>(Arrays.asList(indexComponent(DualRoleController.class).getKeys()));
+        Set<String> scanned = scannedKeys(DualRoleController.class);
+
+        assertTrue(scanned.contains("dualRoleController"));
+        assertTrue(scanned.contains(FixtureService.class.getName()));
+        assertEquals(scanned, indexed);
+    }
+
+    @Test
+    public void incrementalCompileKeepsOtherComponents() throws Exception {
+
+        File output = folder.newFolder("classes");
+        File[] sources = new File(FIXTURE_SOURCES).listFiles();
+        assertNotNull(sources);
+        compile(output, sources);
+        //只重新编译一个类,和IDE中的增量编译一样
+        compile(output, new File(FIXTURE_SOURCES, PlainController.class.getSimpleName() + ".java"));
+
+        MyComponentIndex index = loadIndex(output);
+        assertNotNull(index.getComponent(PlainController.class.getName()));
+        assertNotNull(index.getComponent(DualRoleController.class.getName()));
+
+        //删除的类从索引中去掉
+        assertTrue(new File(output, DualRoleController.class.getName().replace('.', '/') + ".class").delete());
+        compile(output, new File(FIXTURE_SOURCES, PlainController.class.getSimpleName() + ".java"));
+        assertNull(loadIndex(output).getComponent(DualRoleController.class.getName()));
+    }
+
+    /**
+     * 用MyComponentIndexProcessor编译fixture包,读取生成的索引
+     */
+    private MyComponentIndex.Component indexComponent(Class<?> clazz) throws Exception {
+
+        File output = folder.newFolder("classes");
+        File[] sources = new File(FIXTURE_SOURCES).listFiles();
+        assertNotNull(sources);
+        compile(output, sources);
+
+        MyComponentIndex.Component component = loadIndex(output).getComponent(clazz.getName());
+        assertNotNull(component);
+        return component;
+    }
+
+    /**
+     * 编译到output目录,output同时在classpath中,和增量编译的环境一致
+     */
+    private static void compile(File output, File... sources) throws Exception {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            //不包含测试类的目录,其中也有编译好的fixture
+            StringBuilder classpath = new StringBuilder(output.getPath());
+            for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                if(!entry.endsWith("test-classes")){
+                    classpath.append(File.pathSeparator).append(entry);
+                }
+            }
+            boolean success = compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-encoding", "UTF-8", "-d", output.getPath(), "-classpath", classpath.toString(),
+                            "-processor", MyComponentIndexProcessor.class.getName()),
+                    null, fileManager.getJavaFileObjects(sources)).call();
+            assertTrue(success);
+        }
+    }
+
+    private static MyComponentIndex loadIndex(File output) throws Exception {
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()}, null)) {
+            MyComponentIndex index = MyComponentIndex.load(classLoader);
+            assertNotNull(index);
+            return index;
+        }
+    }
+
+    /**
+     * 关闭索引初始化IOC容器,找出clazz的实例对应的所有key
+     */
+    private static Set<String> scannedKeys(Class<?> clazz) {
+
+        ApplicationContext.initIOC("index-fixture.properties");
+        Set<String> keys = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : ApplicationContext.getIOC().entrySet()) {
+            if(clazz.isInstance(entry.getValue())){
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,17 @@
+package com.longye.spring.framework.index.fixture;
+
+import com.longye.spring.framework.annotation.MyController;
+import com.longye.spring.framework.annotation.MyService;
+
+/**
+ * 同时是controller和service的类,IOC容器中应该同时有类名和接口名两个key
+ */
+@MyController
+@MyService
+public class DualRoleController implements FixtureService {
+
+    @Override
+    public String name() {
+        return "dual";
+    }
+}
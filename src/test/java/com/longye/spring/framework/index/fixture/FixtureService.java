@@ -0,0 +1,9 @@
+package com.longye.spring.framework.index.fixture;
+
+/**
+ * 被同时带有MyController和MyService注解的类实现的接口
+ */
+public interface FixtureService {
+
+    String name();
+}
@@ -0,0 +1,10 @@
+package com.longye.spring.framework.index.fixture;
+
+import com.longye.spring.framework.annotation.MyController;
+
+/**
+ * 增量编译时单独重新编译的类,其他类在索引中的记录应该保留
+ */
+@MyController
+public class PlainController {
+}
@@ -0,0 +1,68 @@
+package com.longye.spring.framework.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * JDK中的值类型写成字符串,不反射访问java.*类的私有属性
+ */
+public class MyJsonMapperTest {
+
+    public static class Order {
+
+        public LocalDate date = LocalDate.of(2020, 1, 2);
+
+        public UUID id = new UUID(0, 1);
+
+        public BigDecimal price = new BigDecimal("1.50");
+
+        public URI link = URI.create("http://localhost/order");
+
+        public Optional<String> remark = Optional.of("fast");
+    }
+
+    @Test
+    public void writesJdkValueTypes() throws Exception {
+        assertEquals("{\"date\":\"2020-01-02\",\"id\":\"00000000-0000-0000-0000-000000000001\",\"price\":1.50,"
+                + "\"link\":\"http://localhost/order\",\"remark\":\"fast\"}", json(new Order()));
+    }
+
+    public static class Measure {
+
+        public float weight = 0.1f;
+
+        public Float ratio = 2.5f;
+
+        public double precise = 0.1;
+    }
+
+    @Test
+    public void writesFloatWithoutWidening() throws Exception {
+        assertEquals("{\"weight\":0.1,\"ratio\":2.5,\"precise\":0.1}", json(new Measure()));
+        assertEquals("0.1", json(0.1f));
+    }
+
+    @Test
+    public void writesJdkValueAtTopLevel() throws Exception {
+        assertEquals("\"2020-01-02\"", json(LocalDate.of(2020, 1, 2)));
+    }
+
+    private static String json(Object value) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MyJsonWriter writer = new MyJsonWriter(out)) {
+            MyJsonMapper.write(writer, value);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
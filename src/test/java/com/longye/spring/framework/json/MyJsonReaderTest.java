@@ -0,0 +1,139 @@
+package com.longye.spring.framework.json;
+
+import com.longye.spring.framework.annotation.MyRequestBody;
+import com.longye.spring.framework.bind.MyArgumentBinder;
+import com.longye.spring.framework.bind.MyBindException;
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JSON绑定到Java对象,嵌套的类在生成reader时就解析
+ */
+public class MyJsonReaderTest {
+
+    public static class Fruit {
+
+        public String name;
+
+        public int count;
+
+        public List<Fruit> children;
+
+        public Map<String, Long> prices;
+    }
+
+    public static class Basket {
+
+        public Fruit fruit;
+    }
+
+    public static class Unsupported {
+
+        public Runnable task;
+    }
+
+    public static class NestedUnsupported {
+
+        public List<Unsupported> items;
+    }
+
+    public void save(@MyRequestBody Basket basket) {
+    }
+
+    public void broken(@MyRequestBody NestedUnsupported body) {
+    }
+
+    @Test
+    public void readsNestedBean() throws Exception {
+
+        Basket basket = (Basket) read("{\"fruit\":{\"name\":\"apple\",\"count\":2,\"unknown\":[1,{\"a\":null}],"
+                + "\"children\":[{\"name\":\"seed\",\"count\":null}],\"prices\":{\"small\":3}}}", Basket.class);
+        assertEquals("apple", basket.fruit.name);
+        assertEquals(2, basket.fruit.count);
+        assertEquals(1, basket.fruit.children.size());
+        assertEquals("seed", basket.fruit.children.get(0).name);
+        assertEquals(0, basket.fruit.children.get(0).count);
+        assertNull(basket.fruit.children.get(0).children);
+        assertEquals(Long.valueOf(3), basket.fruit.prices.get("small"));
+    }
+
+    @Test
+    public void readsNaturalTypes() throws Exception {
+
+        Map<?, ?> map = (Map<?, ?>) read("{\"a\":1,\"b\":1.5,\"c\":[true,\"x\"],\"d\":null}", Object.class);
+        assertEquals(1L, map.get("a"));
+        assertEquals(1.5, map.get("b"));
+        assertEquals(Arrays.asList(true, "x"), map.get("c"));
+        assertTrue(map.containsKey("d"));
+    }
+
+    @Test(expected = MyJsonException.class)
+    public void rejectsWrongValueType() throws Exception {
+        read("{\"fruit\":{\"count\":\"many\"}}", Basket.class);
+    }
+
+    @Test
+    public void unsupportedNestedTypeFailsWhenReaderIsCreated() {
+
+        try {
+            MyJsonMapper.reader(NestedUnsupported.class);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Runnable"));
+        }
+    }
+
+    @Test
+    public void bindsRequestBody() throws Exception {
+
+        MyArgumentBinder[] binders = MyArgumentBinder.create(MyJsonReaderTest.class.getMethod("save", Basket.class));
+        Basket basket = (Basket) binders[0].bind(request("{\"fruit\":{\"name\":\"pear\"}}"), null, null);
+        assertEquals("pear", basket.fruit.name);
+    }
+
+    @Test(expected = MyBindException.class)
+    public void malformedRequestBodyIsBindError() throws Exception {
+
+        MyArgumentBinder[] binders = MyArgumentBinder.create(MyJsonReaderTest.class.getMethod("save", Basket.class));
+        binders[0].bind(request("{\"fruit\":"), null, null);
+    }
+
+    @Test
+    public void unsupportedRequestBodyFailsWhenBinderIsCreated() throws Exception {
+
+        Method method = MyJsonReaderTest.class.getMethod("broken", NestedUnsupported.class);
+        try {
+            MyArgumentBinder.create(method);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken"));
+        }
+    }
+
+    private static Object read(String json, Class<?> type) throws Exception {
+
+        try (MyJsonReader reader = new MyJsonReader(new StringReader(json))) {
+            return MyJsonMapper.read(reader, type);
+        }
+    }
+
+    private static MyInMemoryRequest request(String json) {
+
+        MyInMemoryRequest req = new MyInMemoryRequest("POST", "/basket");
+        req.setContentType("application/json");
+        req.setContent(json.getBytes(StandardCharsets.UTF_8));
+        return req;
+    }
+}
@@ -0,0 +1,61 @@
+package com.longye.spring.framework.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 直方图的计数、分位数和合并
+ */
+public class MyHistogramTest {
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws Exception {
+
+        MyHistogram histogram = new MyHistogram();
+        int threads = 4;
+        int records = 100_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    histogram.record(1000);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals(threads * records, histogram.getCount());
+        assertEquals(1000, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void percentileStaysWithinBucketError() {
+
+        MyHistogram histogram = new MyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 1.25);
+        assertEquals(1_000_000, histogram.getMax());
+    }
+
+    @Test
+    public void mergeAddsBuckets() {
+
+        MyHistogram a = new MyHistogram();
+        MyHistogram b = new MyHistogram();
+        a.record(10);
+        b.record(10_000);
+        a.merge(b);
+
+        assertEquals(2, a.getCount());
+        assertEquals(10_010, a.getSum());
+        assertEquals(10_000, a.getPercentile(1.0));
+    }
+}
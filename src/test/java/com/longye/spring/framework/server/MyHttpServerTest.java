@@ -0,0 +1,120 @@
+package com.longye.spring.framework.server;
+
+import com.longye.spring.framework.servlet.MyDispatcherServlet;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 内嵌服务器在接口抛出Error和过载时的行为
+ */
+public class MyHttpServerTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    private MyHttpServer server;
+
+    @After
+    public void stop() {
+        release.countDown();
+        if(null != server){
+            server.stop();
+        }
+    }
+
+    @Test
+    public void errorFromHandlerReturns500AndServerKeepsRunning() throws Exception {
+
+        server = start(2, 16);
+        assertEquals("HTTP/1.1 500 Internal Server Error", statusLine("/error"));
+        assertEquals("HTTP/1.1 200 OK", statusLine("/ok"));
+    }
+
+    @Test
+    public void fullQueueReturns503() throws Exception {
+
+        server = start(1, 1);
+        //第一个请求占住唯一的工作线程,第二个请求进入队列,第三个请求被拒绝
+        try (Socket first = send("/block")) {
+            assertEquals(true, blocked.await(5, TimeUnit.SECONDS));
+            try (Socket second = send("/ok")) {
+                //等第二个请求进入队列
+                Thread.sleep(200);
+                assertEquals("HTTP/1.1 503 Service Unavailable", statusLine("/ok"));
+                release.countDown();
+                assertEquals("HTTP/1.1 200 OK", readStatusLine(first));
+                assertEquals("HTTP/1.1 200 OK", readStatusLine(second));
+            }
+        }
+    }
+
+    private MyHttpServer start(int workers, int queueSize) throws IOException {
+
+        Properties properties = new Properties();
+        properties.setProperty("serverPort", "0");
+        properties.setProperty("serverWorkers", String.valueOf(workers));
+        properties.setProperty("serverQueueSize", String.valueOf(queueSize));
+        MyHttpServer server = new MyHttpServer(new TestServlet(), properties);
+        server.start();
+        return server;
+    }
+
+    private String statusLine(String path) throws IOException {
+
+        try (Socket socket = send(path)) {
+            return readStatusLine(socket);
+        }
+    }
+
+    private Socket send(String path) throws IOException {
+
+        Socket socket = new Socket("127.0.0.1", server.getPort());
+        socket.setSoTimeout(5000);
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        return socket;
+    }
+
+    private static String readStatusLine(Socket socket) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        return reader.readLine();
+    }
+
+    private class TestServlet extends MyDispatcherServlet {
+
+        @Override
+        protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+
+            String uri = req.getRequestURI();
+            if("/error".equals(uri)){
+                throw new AssertionError("handler failed");
+            }
+            if("/block".equals(uri)){
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            resp.getOutputStream().write("ok".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.longye.spring.framework.servlet;
+
+import com.longye.spring.framework.servlet.memory.MyInMemoryRequest;
+import com.longye.spring.framework.servlet.memory.MyInMemoryResponse;
+import com.longye.spring.framework.servlet.memory.MyInMemoryServletConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在内存中分发请求,检查批量请求等不经过controller的处理
+ */
+public class MyDispatcherServletTest {
+
+    private MyDispatcherServlet servlet;
+
+    @Before
+    public void init() throws Exception {
+
+        servlet = new MyDispatcherServlet();
+        servlet.init(new MyInMemoryServletConfig("mySpring")
+                .addInitParameter("contextConfigLocation", "dispatcher-test.properties"));
+    }
+
+    @After
+    public void destroy() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void nullBatchItemIsBadRequest() throws Exception {
+
+        MyInMemoryResponse resp = batch("[null,{\"path\":\"/fixture/echo?name=a\"}]");
+        assertEquals(200, resp.getStatus());
+        String body = resp.getContentAsString();
+        assertTrue(body, body.startsWith("[{\"path\":null,\"status\":400,"));
+        assertTrue(body, body.contains("{\"path\":\"/fixture/echo?name=a\",\"status\":200,\"body\":{\"name\":\"a\"}}"));
+    }
+
+    @Test
+    public void failedBatchItemDoesNotLeakException() throws Exception {
+
+        String body = batch("[{\"path\":\"/fixture/fail\"}]").getContentAsString();
+        assertTrue(body, body.contains("\"status\":500"));
+        assertFalse(body, body.contains("secret"));
+        assertFalse(body, body.contains("IllegalStateException"));
+    }
+
+    @Test
+    public void rejectedBatchItemsAreUnavailableAndTimeoutIsHonored() throws Exception {
+
+        //1个线程,队列16,20个子请求中最后3个被拒绝
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 20; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"path\":\"/fixture/slow?millis=200\"}");
+        }
+        long start = System.nanoTime();
+        String body = batch(sb.append(']').toString()).getContentAsString();
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue(body, body.startsWith("[{\"path\":\"/fixture/slow?millis=200\",\"status\":200,"));
+        assertEquals(body, 3, count(body, "too many batch requests"));
+        assertTrue(body, body.contains("request timeout"));
+        //asyncTimeout为1000ms,调用线程不会自己执行被拒绝的子请求
+        assertTrue("took " + millis + "ms", millis < 2000);
+    }
+
+    @Test
+    public void unfinishedFutureTimesOutWithoutAsyncSupport() throws Exception {
+
+        //MyInMemoryRequest不支持异步,只能同步等待,最多等asyncTimeout
+        long start = System.nanoTime();
+        MyInMemoryResponse resp = get("/fixture/never");
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(503, resp.getStatus());
+        assertEquals("503 Service Unavailable, Msg:request timeout", resp.getContentAsString());
+        assertTrue("took " + millis + "ms", millis >= 1000 && millis < 3000);
+    }
+
+    @Test
+    public void errorAfterPartialOutputReplacesResponse() throws Exception {
+
+        MyInMemoryResponse resp = get("/fixture/partial");
+        assertEquals(500, resp.getStatus());
+        assertEquals("500 Internal Server Error", resp.getContentAsString());
+        assertNull(resp.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void smallJsonIsNotCompressed() throws Exception {
+
+        MyInMemoryResponse resp = get("/fixture/echo?name=a", "gzip");
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals("{\"name\":\"a\"}", resp.getContentAsString());
+        assertEquals(resp.getContentSize(), resp.getContentLength());
+    }
+
+    @Test
+    public void largeJsonIsCompressed() throws Exception {
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            name.append('a');
+        }
+        MyInMemoryResponse resp = get("/fixture/echo?name=" + name, "gzip");
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(resp.getContentAsByteArray()))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            assertEquals("{\"name\":\"" + name + "\"}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void lazyInterceptorKeepsItsMapping() throws Exception {
+
+        //LazyInterceptor只拦截/fixture/echo,代理类上没有@MyInterceptor,不能当成拦截所有接口
+        assertEquals("true", get("/fixture/echo?name=a", null).getHeader("X-Lazy-Interceptor"));
+        assertNull(get("/fixture/fail").getHeader("X-Lazy-Interceptor"));
+    }
+
+    @Test
+    public void pathMatches() {
+
+        assertTrue(MyDispatcherServlet.pathMatches("/test/query", "/test/query"));
+        assertFalse(MyDispatcherServlet.pathMatches("/test/query", "/test/other"));
+        assertTrue(MyDispatcherServlet.pathMatches("/test/*", "/test/query"));
+        assertFalse(MyDispatcherServlet.pathMatches("/test/*", "/test/a/b"));
+        assertFalse(MyDispatcherServlet.pathMatches("/test/*", "/other/query"));
+        assertTrue(MyDispatcherServlet.pathMatches("/test/**", "/test/a/b"));
+        assertTrue(MyDispatcherServlet.pathMatches("/test/**", "/test"));
+        assertTrue(MyDispatcherServlet.pathMatches("/**", "/"));
+        assertTrue(MyDispatcherServlet.pathMatches("/**/query", "/a/b/query"));
+        assertFalse(MyDispatcherServlet.pathMatches("/**/query", "/a/b/other"));
+        assertTrue(MyDispatcherServlet.pathMatches("/test/*/detail", "/test/{id}/detail"));
+    }
+
+    private MyInMemoryResponse get(String uri, String acceptEncoding) throws Exception {
+
+        int query = uri.indexOf('?');
+        MyInMemoryRequest req = new MyInMemoryRequest("GET", uri.substring(0, query));
+        req.setQueryString(uri.substring(query + 1));
+        String[] pair = uri.substring(query + 1).split("=", 2);
+        req.setParameter(pair[0], pair[1]);
+        req.setHeader("Accept-Encoding", acceptEncoding);
+        MyInMemoryResponse resp = new MyInMemoryResponse();
+        servlet.service(req, resp);
+        return resp;
+    }
+
+    private MyInMemoryResponse get(String uri) throws Exception {
+
+        MyInMemoryRequest req = new MyInMemoryRequest("GET", uri);
+        MyInMemoryResponse resp = new MyInMemoryResponse();
+        servlet.service(req, resp);
+        return resp;
+    }
+
+    private MyInMemoryResponse batch(String json) throws Exception {
+
+        MyInMemoryRequest req = new MyInMemoryRequest("POST", "/__batch");
+        req.setContentType("application/json");
+        req.setContent(json.getBytes(StandardCharsets.UTF_8));
+        MyInMemoryResponse resp = new MyInMemoryResponse();
+        servlet.service(req, resp);
+        return resp;
+    }
+
+    private static int count(String text, String part) {
+
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
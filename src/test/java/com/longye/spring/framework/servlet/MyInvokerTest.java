@@ -0,0 +1,78 @@
+package com.longye.spring.framework.servlet;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * MyInvoker通过MethodHandle调用方法,参数拆箱、返回值装箱和异常都和直接调用一致
+ */
+public class MyInvokerTest {
+
+    @Test
+    public void invokesWithUnboxingAndBoxing() throws Exception {
+        assertEquals(5, invoke("add", new Class<?>[]{int.class, int.class}, 2, 3));
+    }
+
+    @Test
+    public void voidMethodReturnsNull() throws Exception {
+
+        Target target = new Target();
+        Method method = Target.class.getMethod("touch", String.class);
+        assertNull(MyInvoker.create(target, method).invoke(new Object[]{"a"}));
+        assertEquals("a", target.touched);
+    }
+
+    @Test
+    public void invokesMethodWithManyParameters() throws Exception {
+        assertEquals("abcde", invoke("join", new Class<?>[]{String.class, String.class, String.class, String.class, String.class},
+                "a", "b", "c", "d", "e"));
+    }
+
+    @Test
+    public void invokesNonPublicMethod() throws Exception {
+
+        Method method = Target.class.getDeclaredMethod("hidden", String.class);
+        assertEquals("hidden:a", MyInvoker.create(new Target(), method).invoke(new Object[]{"a"}));
+    }
+
+    @Test(expected = IOException.class)
+    public void checkedExceptionIsNotWrapped() throws Exception {
+        invoke("fail", new Class<?>[0]);
+    }
+
+    private static Object invoke(String name, Class<?>[] types, Object... args) throws Exception {
+
+        Method method = Target.class.getMethod(name, types);
+        return MyInvoker.create(new Target(), method).invoke(args);
+    }
+
+    public static class Target {
+
+        private String touched;
+
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public void touch(String value) {
+            touched = value;
+        }
+
+        public String join(String a, String b, String c, String d, String e) {
+            return a + b + c + d + e;
+        }
+
+        String hidden(String value) {
+            return "hidden:" + value;
+        }
+
+        public Object fail() throws IOException {
+            throw new IOException("fail");
+        }
+    }
+}
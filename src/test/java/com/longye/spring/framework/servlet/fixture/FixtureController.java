@@ -0,0 +1,64 @@
+package com.longye.spring.framework.servlet.fixture;
+
+import com.longye.spring.framework.annotation.MyController;
+import com.longye.spring.framework.annotation.MyRequestMapping;
+import com.longye.spring.framework.annotation.MyRequestParam;
+import com.longye.spring.framework.annotation.MyResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MyDispatcherServletTest使用的接口
+ */
+@MyController
+@MyRequestMapping("/fixture")
+public class FixtureController {
+
+    @MyResponseBody
+    @MyRequestMapping("/echo")
+    public Map<String, Object> echo(@MyRequestParam("name") String name) {
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", name);
+        return result;
+    }
+
+    @MyResponseBody
+    @MyRequestMapping("/fail")
+    public Map<String, Object> fail() {
+        throw new IllegalStateException("secret detail");
+    }
+
+    /**
+     * 已经通过getOutputStream输出了一部分压缩的响应后才出错
+     */
+    @MyRequestMapping("/partial")
+    public void partial(HttpServletResponse resp) throws IOException {
+
+        resp.setHeader("Content-Encoding", "gzip");
+        resp.getOutputStream().write("partial".getBytes(StandardCharsets.UTF_8));
+        throw new IllegalStateException("secret detail");
+    }
+
+    @MyResponseBody
+    @MyRequestMapping("/slow")
+    public Map<String, Object> slow(@MyRequestParam("millis") long millis) throws InterruptedException {
+
+        Thread.sleep(millis);
+        return echo("slow");
+    }
+
+    /**
+     * 永远不会完成的异步接口
+     */
+    @MyResponseBody
+    @MyRequestMapping("/never")
+    public CompletableFuture<Map<String, Object>> never() {
+        return new CompletableFuture<>();
+    }
+}
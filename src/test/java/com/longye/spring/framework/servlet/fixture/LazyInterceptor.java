@@ -0,0 +1,24 @@
+package com.longye.spring.framework.servlet.fixture;
+
+import com.longye.spring.framework.annotation.MyInterceptor;
+import com.longye.spring.framework.annotation.MyLazy;
+import com.longye.spring.framework.servlet.MyHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+
+/**
+ * 延迟初始化的拦截器,IOC容器中是它的代理,只拦截/fixture/echo
+ */
+@MyLazy
+@MyInterceptor(value = "/fixture/echo", order = 1)
+public class LazyInterceptor implements MyHandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Method handler) {
+
+        resp.setHeader("X-Lazy-Interceptor", "true");
+        return true;
+    }
+}